@@ -0,0 +1,659 @@
+package com.company.benchmarks;
+
+import com.company.ManifestWriter;
+import com.company.ProductCatalog;
+import com.company.ProductLoad;
+import com.company.TrainCar;
+import com.company.TrainListener;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The ColumnarTrain class is a column-per-field layout of a train, kept in the benchmarks to be measured against the
+ * TrainLinkedList on very large trains. It is not part of the train library. Instead of keeping a TrainCarNode, a
+ * TrainCar and a ProductLoad object for every car, it keeps each field of the cars in its own primitive array: lengths,
+ * car weights, load weights and load values in double arrays, whether a car is loaded and dangerous in a byte array,
+ * and the load's name as an id into a table holding each distinct name once. A car is identified by its position in
+ * the arrays and the cursor is just a position.
+ *
+ * The class offers the same cursor operations as the TrainLinkedList, but not its semantics: TrainCars passed in are
+ * copied into the columns, and TrainCars handed out are fresh copies built from the columns, so changing one of them
+ * or its load does not change the train; use setCursorData or setCursorLoad for that. Moving the cursor and reaching
+ * any car by position take O(1) time, as does inserting at the tail, while inserting or removing in the middle of the
+ * train shifts the later cars over.
+ *
+ * @author Kirat Singh
+ */
+public class ColumnarTrain {
+    private static final byte LOADED = 1;
+    private static final byte DANGEROUS = 2;
+
+    private double[] carLengths;
+    private double[] carWeights;
+    private double[] loadWeights;
+    private double[] loadValues;
+    private byte[] flags;
+    private int[] nameIds;
+
+    private ArrayList<String> names;
+    private int[] nameProducts;
+    private HashMap<String, Integer> nameTable;
+    private ProductSum[] products;
+    private TrainListener[] listeners;
+
+    private int cursor;
+    private int size;
+    private double length;
+    private double weight;
+    private double value;
+    private int numDangerousCars;
+
+    /**
+     * Creates an empty ColumnarTrain.
+     */
+    public ColumnarTrain() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty ColumnarTrain with room for a number of cars before its columns have to grow.
+     * @param capacity
+     *      The number of cars to make room for.
+     * @throws IllegalArgumentException
+     *      Thrown when the capacity is negative.
+     */
+    public ColumnarTrain(int capacity) throws IllegalArgumentException{
+        if(capacity < 0)
+            throw new IllegalArgumentException("The capacity cannot be negative!");
+        carLengths = new double[capacity];
+        carWeights = new double[capacity];
+        loadWeights = new double[capacity];
+        loadValues = new double[capacity];
+        flags = new byte[capacity];
+        nameIds = new int[capacity];
+        names = new ArrayList<String>();
+        nameProducts = new int[8];
+        nameTable = new HashMap<String, Integer>();
+        products = new ProductSum[16];
+        listeners = new TrainListener[0];
+        cursor = -1;
+    }
+
+    /**
+     * Precondition:
+     *      The train is not empty.
+     * @return
+     *      Returns a copy of the car the cursor is pointing at.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty.
+     */
+    public TrainCar getCursorData() throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The List is currently empty!");
+        return carAt(cursor);
+    }
+
+    /**
+     * Replaces the car the cursor is pointing at with the values of another car.
+     * Precondition:
+     *      The train is not empty.
+     * @param car
+     *      The car whose values are copied into the train.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty, the car is null, or the car's weight/length are invalid.
+     */
+    public void setCursorData(TrainCar car) throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The List is currently empty!");
+        checkCar(car);
+        removeTotals(cursor);
+        write(cursor, car);
+        addTotals(cursor);
+    }
+
+    /**
+     * Replaces the load of the car the cursor is pointing at.
+     * Precondition:
+     *      The train is not empty.
+     * @param load
+     *      The load whose values are copied into the train, or null to empty the car.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty.
+     */
+    public void setCursorLoad(ProductLoad load) throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The List is currently empty!");
+        removeTotals(cursor);
+        writeLoad(cursor, load);
+        addTotals(cursor);
+    }
+
+    /**
+     * Inserts a copy of a car into the train after the cursor position and moves the cursor to it.
+     * @param newCar
+     *      The car to insert.
+     * @throws IllegalArgumentException
+     *      Thrown when the new car is null or its weight/length are invalid.
+     */
+    public void insertAfterCursor(TrainCar newCar) throws IllegalArgumentException{
+        checkCar(newCar);
+        int at = cursor + 1;
+        ensureCapacity(size + 1);
+        shift(at, size, 1);
+        size++;
+        write(at, newCar);
+        addTotals(at);
+        cursor = at;
+        if(listeners.length > 0) {
+            for(TrainListener listener : listeners)
+                listener.carInserted(newCar);
+        }
+    }
+
+    /**
+     * Removes the car the cursor is pointing at. The cursor moves to the next car, or the previous car if there is no
+     * next car.
+     * @return
+     *      A copy of the removed car.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty.
+     */
+    public TrainCar removeCursor() throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The list is currently empty!");
+        TrainCar removed = carAt(cursor);
+        removeTotals(cursor);
+        shift(cursor + 1, size, -1);
+        size--;
+        if(cursor == size)
+            cursor--;
+        for(TrainListener listener : listeners)
+            listener.carRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Moves the cursor to the next car, unless it is at the tail.
+     */
+    public void cursorForward() {
+        boolean moved = false;
+        if(cursor >= 0 && cursor < size - 1) {
+            cursor++;
+            moved = true;
+        }
+        fireCursorMoved(true, moved);
+    }
+
+    /**
+     * Moves the cursor to the previous car, unless it is at the head.
+     */
+    public void cursorBackward() {
+        boolean moved = false;
+        if(cursor > 0) {
+            cursor--;
+            moved = true;
+        }
+        fireCursorMoved(false, moved);
+    }
+
+    /**
+     * Moves the cursor directly to the car at the given position.
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public void seek(int position) throws IllegalArgumentException{
+        checkPosition(position);
+        cursor = position;
+    }
+
+    /**
+     * Returns a copy of the car at the given position without moving the cursor.
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      A copy of the car at that position.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public TrainCar getCar(int position) throws IllegalArgumentException{
+        checkPosition(position);
+        return carAt(position);
+    }
+
+    /**
+     * @return
+     *      Returns the position of the cursor, with 0 being the head of the train, or -1 if the train is empty.
+     */
+    public int getCursorIndex() {
+        return cursor;
+    }
+
+    /**
+     * Removes all dangerous cars from the train in one pass that moves each remaining car down over the gaps,
+     * maintaining the order of the cars. If the cursor pointed at a removed car, it now points at the next remaining
+     * car, or the previous remaining car if no car follows it.
+     * @return
+     *      The number of cars that were removed.
+     */
+    public int removeDangerousCars() {
+        int kept = 0;
+        int newCursor = -1;
+        boolean cursorRemoved = false;
+        int removed = 0;
+        for(int i = 0; i < size; i++) {
+            if((flags[i] & DANGEROUS) != 0) {
+                if(listeners.length > 0) {
+                    TrainCar car = carAt(i);
+                    for(TrainListener listener : listeners)
+                        listener.carRemoved(car);
+                }
+                removeTotals(i);
+                removed++;
+                if(i == cursor)
+                    cursorRemoved = true;
+                continue;
+            }
+            if(i == cursor || (cursorRemoved && newCursor < 0))
+                newCursor = kept;
+            if(kept != i) {
+                carLengths[kept] = carLengths[i];
+                carWeights[kept] = carWeights[i];
+                loadWeights[kept] = loadWeights[i];
+                loadValues[kept] = loadValues[i];
+                flags[kept] = flags[i];
+                nameIds[kept] = nameIds[i];
+            }
+            kept++;
+        }
+        size = kept;
+        cursor = newCursor >= 0 ? newCursor : size - 1;
+        for(TrainListener listener : listeners)
+            listener.dangerousCarsRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Prints the manifest table of the train to the console.
+     */
+    public void printManifest() {
+        try {
+            writeManifest(System.out);
+        }catch(IOException e) {
+            // PrintStream reports errors through checkError() rather than by throwing.
+        }
+    }
+
+    /**
+     * Writes the manifest table printed by printManifest to any Appendable, such as a Writer or a StringBuilder.
+     * @param out
+     *      The destination of the manifest.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeManifest(Appendable out) throws IOException {
+        ManifestWriter writer = new ManifestWriter(out);
+        writeManifest(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the manifest table through a ManifestWriter, straight from the columns. The writer is not flushed.
+     * @param writer
+     *      The writer the manifest goes through.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeManifest(ManifestWriter writer) throws IOException {
+        writer.writeHeader();
+        for(int i = 0; i < size; i++) {
+            String name = (flags[i] & LOADED) != 0 ? names.get(nameIds[i]) : null;
+            writer.writeRow(i + 1, carLengths[i], carWeights[i], name, loadWeights[i], loadValues[i],
+                    (flags[i] & DANGEROUS) != 0, i == cursor);
+        }
+    }
+
+    /**
+     * Prints the summed weight and value of every load with the indicated name, ignoring case, to System.out.
+     * @param name
+     *      The name of the product being searched for.
+     * @throws IllegalArgumentException
+     *      Thrown when the product name produces no results.
+     */
+    public void findProduct(String name) throws IllegalArgumentException{
+        findProduct(name, System.out);
+    }
+
+    /**
+     * Prints the summed weight and value of every load with the indicated name, ignoring case, to the given
+     * PrintStream.
+     * @param name
+     *      The name of the product being searched for.
+     * @param out
+     *      The stream the record is printed to.
+     * @throws IllegalArgumentException
+     *      Thrown when the product name produces no results.
+     */
+    public void findProduct(String name, PrintStream out) throws IllegalArgumentException{
+        ProductLoad found = getProductTotal(name);
+        if(found == null)
+            throw new IllegalArgumentException("No product with that name was found!");
+        ManifestWriter.printProduct(out, name, found);
+    }
+
+    /**
+     * Looks up the combined weight and value of every load with the indicated name, ignoring case.
+     * @param name
+     *      The name of the product being searched for.
+     * @return
+     *      A single ProductLoad record holding the summed weight and value of the product, or null if no load with
+     *      that name is on the train.
+     */
+    public ProductLoad getProductTotal(String name) {
+        if(name == null)
+            return null;
+        int id = ProductCatalog.find(name);
+        if(id < 0 || id >= products.length || products[id] == null)
+            return null;
+        ProductSum total = products[id];
+        return new ProductLoad(name, total.getWeight(), total.getValue(), total.isDangerous());
+    }
+
+    /**
+     * Registers a listener to be told about the train's events.
+     * @param listener
+     *      The listener to add.
+     * @throws IllegalArgumentException
+     *      Thrown when the listener is null.
+     */
+    public void addListener(TrainListener listener) throws IllegalArgumentException{
+        if(listener == null)
+            throw new IllegalArgumentException("The listener has not been created!");
+        TrainListener[] grown = new TrainListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Stops a listener from being told about the train's events.
+     * @param listener
+     *      The listener to remove.
+     * @return
+     *      True if the listener was registered, false otherwise.
+     */
+    public boolean removeListener(TrainListener listener) {
+        for(int i = 0; i < listeners.length; i++) {
+            if(listeners[i] == listener) {
+                TrainListener[] shrunk = new TrainListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return
+     *      Returns the number of cars on the train.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return
+     *      Returns the total length of the train in meters.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * @return
+     *      Returns the total weight of the train, including loads and cars.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return
+     *      Returns the total value of all the loads on the train.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return
+     *      Returns the number of dangerous cars on the train.
+     */
+    public int getNumDangerousCars() {
+        return numDangerousCars;
+    }
+
+    /**
+     * @return
+     *      Returns true if the train contains at least one dangerous car.
+     */
+    public boolean isDangerous() {
+        return numDangerousCars > 0;
+    }
+
+    /**
+     * Returns a neatly formatted String representation of the train, in the same form as a TrainLinkedList.
+     * @return
+     *      A string with the number of cars, length, weight, value and dangerousness of the train.
+     */
+    public String toString() {
+        String isDangerous = "NOT DANGEROUS";
+        if(isDangerous())
+            isDangerous = "DANGEROUS";
+        return "Train: " + size + " cars, " + String.format("%.1f", length) + " meters, "
+                + String.format("%.1f", weight) + " tons, $" + String.format("%.2f", value) + " value, " +
+                isDangerous + " with " + numDangerousCars + " dangerous cars found on the train.";
+    }
+
+    /**
+     * Builds a TrainCar, with a ProductLoad if the car is loaded, from the columns at a position.
+     * @param i
+     *      The position of the car.
+     * @return
+     *      The new TrainCar.
+     */
+    private TrainCar carAt(int i) {
+        TrainCar car = new TrainCar(carLengths[i], carWeights[i]);
+        if((flags[i] & LOADED) != 0)
+            car.setCarLoad(new ProductLoad(names.get(nameIds[i]), loadWeights[i], loadValues[i],
+                    (flags[i] & DANGEROUS) != 0));
+        return car;
+    }
+
+    /**
+     * Copies a car into the columns at a position.
+     * @param i
+     *      The position of the car.
+     * @param car
+     *      The car being copied.
+     */
+    private void write(int i, TrainCar car) {
+        carLengths[i] = car.getCarLength();
+        carWeights[i] = car.getCarWeight();
+        writeLoad(i, car.getCarLoad());
+    }
+
+    /**
+     * Copies a load into the columns at a position.
+     * @param i
+     *      The position of the car.
+     * @param load
+     *      The load being copied, or null for an empty car.
+     */
+    private void writeLoad(int i, ProductLoad load) {
+        if(load == null) {
+            loadWeights[i] = 0;
+            loadValues[i] = 0;
+            flags[i] = 0;
+            nameIds[i] = -1;
+        }else {
+            loadWeights[i] = load.getWeight();
+            loadValues[i] = load.getValue();
+            flags[i] = load.isDangerous() ? LOADED | DANGEROUS : LOADED;
+            nameIds[i] = nameId(load.getName());
+        }
+    }
+
+    /**
+     * Finds the id of a load name, giving it the next id if it has not been seen before. Each name id also records the
+     * ProductCatalog id of its product.
+     * @param name
+     *      The load name.
+     * @return
+     *      The id of the name.
+     */
+    private int nameId(String name) {
+        Integer id = nameTable.get(name);
+        if(id == null) {
+            id = names.size();
+            if(id == nameProducts.length)
+                nameProducts = Arrays.copyOf(nameProducts, id * 2);
+            names.add(ProductCatalog.intern(name));
+            nameProducts[id] = ProductCatalog.idOf(name);
+            nameTable.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds the car at a position to the train totals and the product index.
+     * @param i
+     *      The position of the car.
+     */
+    private void addTotals(int i) {
+        length += carLengths[i];
+        weight += carWeights[i] + loadWeights[i];
+        value += loadValues[i];
+        if((flags[i] & LOADED) != 0) {
+            boolean dangerous = (flags[i] & DANGEROUS) != 0;
+            if(dangerous)
+                numDangerousCars++;
+            int id = nameProducts[nameIds[i]];
+            if(id >= products.length)
+                products = Arrays.copyOf(products, Math.max(id + 1, products.length * 2));
+            ProductSum total = products[id];
+            if(total == null) {
+                total = new ProductSum();
+                products[id] = total;
+            }
+            total.add(loadWeights[i], loadValues[i], dangerous);
+        }
+    }
+
+    /**
+     * Takes the car at a position out of the train totals and the product index.
+     * @param i
+     *      The position of the car.
+     */
+    private void removeTotals(int i) {
+        length -= carLengths[i];
+        weight -= carWeights[i] + loadWeights[i];
+        value -= loadValues[i];
+        if((flags[i] & LOADED) != 0) {
+            boolean dangerous = (flags[i] & DANGEROUS) != 0;
+            if(dangerous)
+                numDangerousCars--;
+            int id = nameProducts[nameIds[i]];
+            ProductSum total = products[id];
+            if(total != null) {
+                total.remove(loadWeights[i], loadValues[i], dangerous);
+                if(total.getCount() == 0)
+                    products[id] = null;
+            }
+        }
+    }
+
+    /**
+     * Moves the cars in a range of positions along the columns.
+     * @param from
+     *      The first position to move.
+     * @param to
+     *      The position after the last one to move.
+     * @param by
+     *      How many positions to move the cars, negative to move them toward the head.
+     */
+    private void shift(int from, int to, int by) {
+        int n = to - from;
+        if(n <= 0)
+            return;
+        System.arraycopy(carLengths, from, carLengths, from + by, n);
+        System.arraycopy(carWeights, from, carWeights, from + by, n);
+        System.arraycopy(loadWeights, from, loadWeights, from + by, n);
+        System.arraycopy(loadValues, from, loadValues, from + by, n);
+        System.arraycopy(flags, from, flags, from + by, n);
+        System.arraycopy(nameIds, from, nameIds, from + by, n);
+    }
+
+    /**
+     * Grows the columns, by at least half their size, if they cannot hold the given number of cars.
+     * @param capacity
+     *      The number of cars the columns must hold.
+     */
+    private void ensureCapacity(int capacity) {
+        if(capacity <= carLengths.length)
+            return;
+        int newCapacity = Math.max(capacity, carLengths.length + (carLengths.length >> 1) + 1);
+        double[] grownLengths = new double[newCapacity];
+        double[] grownWeights = new double[newCapacity];
+        double[] grownLoadWeights = new double[newCapacity];
+        double[] grownLoadValues = new double[newCapacity];
+        byte[] grownFlags = new byte[newCapacity];
+        int[] grownNameIds = new int[newCapacity];
+        System.arraycopy(carLengths, 0, grownLengths, 0, size);
+        System.arraycopy(carWeights, 0, grownWeights, 0, size);
+        System.arraycopy(loadWeights, 0, grownLoadWeights, 0, size);
+        System.arraycopy(loadValues, 0, grownLoadValues, 0, size);
+        System.arraycopy(flags, 0, grownFlags, 0, size);
+        System.arraycopy(nameIds, 0, grownNameIds, 0, size);
+        carLengths = grownLengths;
+        carWeights = grownWeights;
+        loadWeights = grownLoadWeights;
+        loadValues = grownLoadValues;
+        flags = grownFlags;
+        nameIds = grownNameIds;
+    }
+
+    /**
+     * Tells every listener that the cursor was asked to move.
+     * @param forward
+     *      True if the cursor was asked to move toward the tail.
+     * @param moved
+     *      True if the cursor moved.
+     */
+    private void fireCursorMoved(boolean forward, boolean moved) {
+        if(listeners.length == 0)
+            return;
+        TrainCar car = cursor < 0 ? null : carAt(cursor);
+        for(TrainListener listener : listeners)
+            listener.cursorMoved(car, forward, moved);
+    }
+
+    private void checkPosition(int position) throws IllegalArgumentException{
+        if(position < 0 || position >= size)
+            throw new IllegalArgumentException("There is no car at position " + position + "!");
+    }
+
+    private static void checkCar(TrainCar car) throws IllegalArgumentException{
+        if(car == null)
+            throw new IllegalArgumentException("That car has not been created!");
+        if(!(car.getCarLength() > 0) || !(car.getCarWeight() > 0))
+            throw new IllegalArgumentException("Weight/length values must be greater than 0!");
+    }
+}
@@ -0,0 +1,117 @@
+package com.company.benchmarks;
+
+import com.company.ManifestWriter;
+import com.company.TrainCar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ColumnarTrain on the same trains and operations as TrainLinkedListBenchmark, so the two can be
+ * compared directly. Run with "-prof gc" to see the allocation rate of each operation.
+ *
+ * @author Kirat Singh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnarTrainBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"0.0", "0.01", "0.5"})
+    public double dangerousRatio;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double loadedRatio;
+
+    private ColumnarTrain train;
+    private TrainCar spare;
+    private Random random;
+    private ManifestWriter discardWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        train = Trains.columnarTrain(size, loadedRatio, dangerousRatio);
+        random = new Random(7);
+        spare = Trains.car(random, loadedRatio, dangerousRatio);
+        discardWriter = new ManifestWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    /**
+     * Inserts a car after the cursor and removes it again, leaving the train as it was.
+     */
+    @Benchmark
+    public TrainCar insertAndRemoveCursor() {
+        train.insertAfterCursor(spare);
+        return train.removeCursor();
+    }
+
+    /**
+     * Moves the cursor to a random car.
+     */
+    @Benchmark
+    public void seek() {
+        train.seek(random.nextInt(size));
+    }
+
+    /**
+     * Writes the whole manifest to a Writer that discards it.
+     */
+    @Benchmark
+    public void writeManifest() throws IOException {
+        train.writeManifest(discardWriter);
+    }
+
+    /**
+     * Removes the dangerous cars from a fresh copy of the train. The copy is built outside the measurement.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int removeDangerousCars(FreshTrain fresh) {
+        return fresh.train.removeDangerousCars();
+    }
+
+    /**
+     * A new train for every invocation of a benchmark that takes cars off the train.
+     */
+    @State(Scope.Thread)
+    public static class FreshTrain {
+        private ColumnarTrain train;
+
+        @Setup(Level.Invocation)
+        public void setUp(ColumnarTrainBenchmark benchmark) {
+            train = Trains.columnarTrain(benchmark.size, benchmark.loadedRatio, benchmark.dangerousRatio);
+        }
+    }
+}
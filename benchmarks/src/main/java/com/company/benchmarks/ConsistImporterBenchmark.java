@@ -0,0 +1,72 @@
+package com.company.benchmarks;
+
+import com.company.ConsistImporter;
+import com.company.TrainLinkedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures importing a consist of 1,000,000 cars, three quarters of them loaded, from memory in the CSV and binary
+ * formats with one worker thread and with one per processor. Cars per second is 1,000,000 divided by the time shown.
+ *
+ * @author Kirat Singh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ConsistImporterBenchmark {
+    @Param({"csv", "binary"})
+    public String format;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private byte[] consist;
+    private ConsistImporter importer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        TrainLinkedList train = Trains.train(1000000, 0.75, 0.01);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if(format.equals("csv")) {
+            Writer writer = new OutputStreamWriter(out, "UTF-8");
+            ConsistImporter.writeCsv(train, writer);
+            writer.flush();
+        }else {
+            ConsistImporter.writeBinary(train, out);
+        }
+        consist = out.toByteArray();
+        importer = threads == 0 ? new ConsistImporter()
+                : new ConsistImporter(threads, ConsistImporter.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Imports the whole consist into a new train. A thread count of 0 means one worker thread per processor.
+     */
+    @Benchmark
+    public TrainLinkedList importConsist() throws IOException {
+        TrainLinkedList train = new TrainLinkedList();
+        importer.importTo(train, new ByteArrayInputStream(consist));
+        return train;
+    }
+}
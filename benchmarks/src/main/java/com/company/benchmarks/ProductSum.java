@@ -0,0 +1,85 @@
+package com.company.benchmarks;
+
+/**
+ * The ProductSum class is the running record the benchmark trains keep for a single product, in the same way the
+ * TrainLinkedList keeps its product index. It sums the weight and value of every load of the product on the train
+ * and counts how many of those loads are dangerous.
+ *
+ * @author Kirat Singh
+ */
+class ProductSum {
+    private int count;
+    private double weight;
+    private double value;
+    private int numDangerous;
+
+    /**
+     * Adds a load to this product's totals.
+     * @param loadWeight
+     *      The weight of the load.
+     * @param loadValue
+     *      The value of the load.
+     * @param dangerous
+     *      Whether the load is dangerous.
+     */
+    void add(double loadWeight, double loadValue, boolean dangerous) {
+        count++;
+        weight += loadWeight;
+        value += loadValue;
+        if(dangerous)
+            numDangerous++;
+    }
+
+    /**
+     * Removes a load from this product's totals.
+     * @param loadWeight
+     *      The weight of the load.
+     * @param loadValue
+     *      The value of the load.
+     * @param dangerous
+     *      Whether the load is dangerous.
+     */
+    void remove(double loadWeight, double loadValue, boolean dangerous) {
+        count--;
+        weight -= loadWeight;
+        value -= loadValue;
+        if(dangerous)
+            numDangerous--;
+        if(count == 0) {
+            weight = 0;
+            value = 0;
+        }
+    }
+
+    /**
+     * @return
+     *      Returns the number of loads of this product on the train.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return
+     *      Returns the summed weight of every load of this product.
+     */
+    double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return
+     *      Returns the summed value of every load of this product.
+     */
+    double getValue() {
+        return value;
+    }
+
+    /**
+     * @return
+     *      Returns true if at least one load of this product is dangerous.
+     */
+    boolean isDangerous() {
+        return numDangerous > 0;
+    }
+}
@@ -0,0 +1,177 @@
+package com.company.benchmarks;
+
+import com.company.ProductLoad;
+import com.company.TrainCar;
+import com.company.TrainLinkedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the core operations of the TrainLinkedList on trains of 10 to 1,000,000 cars with different shares of
+ * loaded and dangerous cars. Run with "-prof gc" to see the allocation rate of each operation.
+ *
+ * @author Kirat Singh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainLinkedListBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"0.0", "0.01", "0.5"})
+    public double dangerousRatio;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double loadedRatio;
+
+    private TrainLinkedList train;
+    private TrainCar spare;
+    private String[] present;
+    private Random random;
+    private PrintStream discardStream;
+    private Writer discardWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        train = Trains.train(size, loadedRatio, dangerousRatio);
+        random = new Random(7);
+        spare = Trains.car(random, loadedRatio, dangerousRatio);
+        ArrayList<String> found = new ArrayList<String>();
+        for(String name : Trains.PRODUCTS) {
+            if(train.getProductTotal(name) != null)
+                found.add(name);
+        }
+        present = found.toArray(new String[found.size()]);
+        discardStream = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        discardWriter = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Inserts a car after the cursor and removes it again, leaving the train as it was.
+     */
+    @Benchmark
+    public TrainCar insertAndRemoveCursor() {
+        train.insertAfterCursor(spare);
+        return train.removeCursor();
+    }
+
+    /**
+     * Looks up a product that is on the train through findProduct, printing the record to a stream that discards it.
+     * A train with no loads has no such product, so there the lookup goes through getProductTotal instead of timing
+     * the exception findProduct throws.
+     */
+    @Benchmark
+    public ProductLoad findProduct() {
+        if(present.length == 0)
+            return train.getProductTotal(Trains.PRODUCTS[random.nextInt(Trains.PRODUCTS.length)]);
+        train.findProduct(present[random.nextInt(present.length)], discardStream);
+        return null;
+    }
+
+    /**
+     * Looks up the totals of any product, present on the train or not, through getProductTotal.
+     */
+    @Benchmark
+    public ProductLoad getProductTotal() {
+        return train.getProductTotal(Trains.PRODUCTS[random.nextInt(Trains.PRODUCTS.length)]);
+    }
+
+    /**
+     * Moves the cursor to a random car.
+     */
+    @Benchmark
+    public void seek() {
+        train.seek(random.nextInt(size));
+    }
+
+    /**
+     * Moves the cursor to a random car and finds the dangerous car nearest to it.
+     */
+    @Benchmark
+    public int findNearestDangerousCar() {
+        train.seek(random.nextInt(size));
+        return train.findNearestDangerousCar();
+    }
+
+    /**
+     * Lists the dangerous cars within 1 km of the locomotive.
+     */
+    @Benchmark
+    public List<TrainCar> dangerousCarsWithin() {
+        return train.getDangerousCarsWithin(1000);
+    }
+
+    /**
+     * Writes the whole manifest to a Writer that discards it.
+     */
+    @Benchmark
+    public void writeManifest() throws IOException {
+        train.writeManifest(discardWriter);
+    }
+
+    /**
+     * Removes the dangerous cars from a fresh copy of the train. The copy is built outside the measurement.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int removeDangerousCars(FreshTrain fresh) {
+        return fresh.train.removeDangerousCars();
+    }
+
+    /**
+     * A new train for every invocation of a benchmark that takes cars off the train.
+     */
+    @State(Scope.Thread)
+    public static class FreshTrain {
+        private TrainLinkedList train;
+
+        @Setup(Level.Invocation)
+        public void setUp(TrainLinkedListBenchmark benchmark) {
+            train = Trains.train(benchmark.size, benchmark.loadedRatio, benchmark.dangerousRatio);
+        }
+    }
+}
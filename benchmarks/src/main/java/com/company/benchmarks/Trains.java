@@ -0,0 +1,123 @@
+package com.company.benchmarks;
+
+import com.company.ProductLoad;
+import com.company.TrainCar;
+import com.company.TrainLinkedList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the trains the benchmarks run against. Trains are generated from a fixed seed, so every run of a benchmark
+ * sees the same cars.
+ *
+ * @author Kirat Singh
+ */
+final class Trains {
+    static final String[] PRODUCTS = {
+            "coal", "grain", "lumber", "steel", "cement", "sand", "gravel", "corn",
+            "oil", "propane", "chlorine", "ammonia", "acid", "ethanol", "butane", "benzene"
+    };
+
+    private Trains() {
+    }
+
+    /**
+     * Generates the cars of a train.
+     * @param size
+     *      The number of cars.
+     * @param loadedRatio
+     *      The share of cars that carry a load, from 0 to 1.
+     * @param dangerousRatio
+     *      The share of cars that carry a dangerous load, from 0 to 1. Dangerous cars are always loaded.
+     * @param seed
+     *      The seed of the generator.
+     * @return
+     *      The cars, in train order.
+     */
+    static List<TrainCar> cars(int size, double loadedRatio, double dangerousRatio, long seed) {
+        Random random = new Random(seed);
+        ArrayList<TrainCar> cars = new ArrayList<TrainCar>(size);
+        for(int i = 0; i < size; i++)
+            cars.add(car(random, loadedRatio, dangerousRatio));
+        return cars;
+    }
+
+    /**
+     * Generates one car.
+     * @param random
+     *      The generator to draw from.
+     * @param loadedRatio
+     *      The chance that the car carries a load.
+     * @param dangerousRatio
+     *      The chance that the car carries a dangerous load.
+     * @return
+     *      The new car.
+     */
+    static TrainCar car(Random random, double loadedRatio, double dangerousRatio) {
+        TrainCar car = new TrainCar(10 + random.nextInt(15), 20 + random.nextInt(60));
+        boolean dangerous = random.nextDouble() < dangerousRatio;
+        if(dangerous || random.nextDouble() < loadedRatio) {
+            String name = PRODUCTS[random.nextInt(PRODUCTS.length)];
+            car.setCarLoad(new ProductLoad(name, 1 + random.nextInt(80), random.nextInt(100000) / 100.0, dangerous));
+        }
+        return car;
+    }
+
+    /**
+     * Builds a train from generated cars, with the cursor in the middle.
+     * @param size
+     *      The number of cars.
+     * @param loadedRatio
+     *      The share of cars that carry a load.
+     * @param dangerousRatio
+     *      The share of cars that carry a dangerous load.
+     * @return
+     *      The new train.
+     */
+    static TrainLinkedList train(int size, double loadedRatio, double dangerousRatio) {
+        TrainLinkedList train = new TrainLinkedList();
+        train.insertAllAfterCursor(cars(size, loadedRatio, dangerousRatio, 42));
+        train.seek(size / 2);
+        return train;
+    }
+
+    /**
+     * Builds a ColumnarTrain from the same generated cars as train, with the cursor in the middle.
+     * @param size
+     *      The number of cars.
+     * @param loadedRatio
+     *      The share of cars that carry a load.
+     * @param dangerousRatio
+     *      The share of cars that carry a dangerous load.
+     * @return
+     *      The new train.
+     */
+    static ColumnarTrain columnarTrain(int size, double loadedRatio, double dangerousRatio) {
+        ColumnarTrain train = new ColumnarTrain(size + 1);
+        for(TrainCar car : cars(size, loadedRatio, dangerousRatio, 42))
+            train.insertAfterCursor(car);
+        train.seek(size / 2);
+        return train;
+    }
+
+    /**
+     * Builds an UnrolledTrain from the same generated cars as train, with the cursor in the middle.
+     * @param size
+     *      The number of cars.
+     * @param loadedRatio
+     *      The share of cars that carry a load.
+     * @param dangerousRatio
+     *      The share of cars that carry a dangerous load.
+     * @return
+     *      The new train.
+     */
+    static UnrolledTrain unrolledTrain(int size, double loadedRatio, double dangerousRatio) {
+        UnrolledTrain train = new UnrolledTrain();
+        for(TrainCar car : cars(size, loadedRatio, dangerousRatio, 42))
+            train.insertAfterCursor(car);
+        train.seek(size / 2);
+        return train;
+    }
+}
@@ -0,0 +1,870 @@
+package com.company.benchmarks;
+
+import com.company.ManifestWriter;
+import com.company.ProductCatalog;
+import com.company.ProductLoad;
+import com.company.TrainCar;
+import com.company.TrainListener;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The UnrolledTrain class is an unrolled linked list layout of a train, kept in the benchmarks to be measured against
+ * the TrainLinkedList. It is not part of the train library. It keeps its cars in a linked list of blocks, each holding
+ * up to 64 cars. Within a block every field of the cars is kept in its own primitive array, the same way the
+ * ColumnarTrain keeps its columns, so walking the train reads a few contiguous arrays per 64 cars instead of following
+ * a TrainCarNode, a TrainCar and a ProductLoad for every car. The cursor is a block and an offset within it.
+ *
+ * The class offers the same cursor operations as the TrainLinkedList, but not its semantics. As in the ColumnarTrain,
+ * TrainCars passed in are copied into the blocks and TrainCars handed out are fresh copies, so changing one of them or
+ * its load does not change the train; use setCursorData or setCursorLoad for that. Inserting or removing at the
+ * cursor moves at most one block's worth of cars: a full block is split in two, and a block that falls under a
+ * quarter full is merged into a neighbour. Moving the cursor one car takes O(1) time, and reaching a car by position
+ * walks the blocks from the nearest of the head, the tail and the cursor, which takes O(n / 64) time. Removing the
+ * dangerous cars packs the remaining cars into full blocks in one pass.
+ *
+ * @author Kirat Singh
+ */
+public class UnrolledTrain {
+    private static final byte LOADED = 1;
+    private static final byte DANGEROUS = 2;
+    private static final int BLOCK_SIZE = 64;
+    private static final int MIN_FILL = BLOCK_SIZE / 4;
+
+    /**
+     * A run of up to BLOCK_SIZE consecutive cars, kept in columns.
+     */
+    private static class Block {
+        private final double[] carLengths = new double[BLOCK_SIZE];
+        private final double[] carWeights = new double[BLOCK_SIZE];
+        private final double[] loadWeights = new double[BLOCK_SIZE];
+        private final double[] loadValues = new double[BLOCK_SIZE];
+        private final byte[] flags = new byte[BLOCK_SIZE];
+        private final int[] nameIds = new int[BLOCK_SIZE];
+        private int count;
+        private Block prev;
+        private Block next;
+
+        /**
+         * Moves the cars of this block from a position to its end along the columns.
+         * @param from
+         *      The first position to move.
+         * @param by
+         *      How many positions to move the cars, negative to move them toward the head.
+         */
+        private void shift(int from, int by) {
+            int n = count - from;
+            if(n <= 0)
+                return;
+            System.arraycopy(carLengths, from, carLengths, from + by, n);
+            System.arraycopy(carWeights, from, carWeights, from + by, n);
+            System.arraycopy(loadWeights, from, loadWeights, from + by, n);
+            System.arraycopy(loadValues, from, loadValues, from + by, n);
+            System.arraycopy(flags, from, flags, from + by, n);
+            System.arraycopy(nameIds, from, nameIds, from + by, n);
+        }
+
+        /**
+         * Copies cars from another block into this one.
+         * @param from
+         *      The block to copy from.
+         * @param start
+         *      The position of the first car to copy in that block.
+         * @param to
+         *      The position the first car is copied to in this block.
+         * @param n
+         *      The number of cars to copy.
+         */
+        private void copy(Block from, int start, int to, int n) {
+            System.arraycopy(from.carLengths, start, carLengths, to, n);
+            System.arraycopy(from.carWeights, start, carWeights, to, n);
+            System.arraycopy(from.loadWeights, start, loadWeights, to, n);
+            System.arraycopy(from.loadValues, start, loadValues, to, n);
+            System.arraycopy(from.flags, start, flags, to, n);
+            System.arraycopy(from.nameIds, start, nameIds, to, n);
+        }
+    }
+
+    private Block head;
+    private Block tail;
+    private Block cursorBlock;
+    private int cursorOffset;
+    private int foundOffset;
+
+    private ArrayList<String> names;
+    private int[] nameProducts;
+    private HashMap<String, Integer> nameTable;
+    private ProductSum[] products;
+    private TrainListener[] listeners;
+
+    private int cursor;
+    private int size;
+    private double length;
+    private double weight;
+    private double value;
+    private int numDangerousCars;
+
+    /**
+     * Creates an empty UnrolledTrain.
+     */
+    public UnrolledTrain() {
+        names = new ArrayList<String>();
+        nameProducts = new int[8];
+        nameTable = new HashMap<String, Integer>();
+        products = new ProductSum[16];
+        listeners = new TrainListener[0];
+        cursor = -1;
+    }
+
+    /**
+     * Precondition:
+     *      The train is not empty.
+     * @return
+     *      Returns a copy of the car the cursor is pointing at.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty.
+     */
+    public TrainCar getCursorData() throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The List is currently empty!");
+        return carAt(cursorBlock, cursorOffset);
+    }
+
+    /**
+     * Replaces the car the cursor is pointing at with the values of another car.
+     * Precondition:
+     *      The train is not empty.
+     * @param car
+     *      The car whose values are copied into the train.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty, the car is null, or the car's weight/length are invalid.
+     */
+    public void setCursorData(TrainCar car) throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The List is currently empty!");
+        checkCar(car);
+        removeTotals(cursorBlock, cursorOffset);
+        write(cursorBlock, cursorOffset, car);
+        addTotals(cursorBlock, cursorOffset);
+    }
+
+    /**
+     * Replaces the load of the car the cursor is pointing at.
+     * Precondition:
+     *      The train is not empty.
+     * @param load
+     *      The load whose values are copied into the train, or null to empty the car.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty.
+     */
+    public void setCursorLoad(ProductLoad load) throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The List is currently empty!");
+        removeTotals(cursorBlock, cursorOffset);
+        writeLoad(cursorBlock, cursorOffset, load);
+        addTotals(cursorBlock, cursorOffset);
+    }
+
+    /**
+     * Inserts a copy of a car into the train after the cursor position and moves the cursor to it. If the cursor's
+     * block is full it is split in two, or, when the cursor is at its end, a new block is started after it.
+     * @param newCar
+     *      The car to insert.
+     * @throws IllegalArgumentException
+     *      Thrown when the new car is null or its weight/length are invalid.
+     */
+    public void insertAfterCursor(TrainCar newCar) throws IllegalArgumentException{
+        checkCar(newCar);
+        Block block;
+        int at;
+        if(head == null) {
+            block = new Block();
+            head = block;
+            tail = block;
+            at = 0;
+        }else {
+            block = cursorBlock;
+            at = cursorOffset + 1;
+        }
+        if(block.count == BLOCK_SIZE) {
+            if(at == BLOCK_SIZE) {
+                block = linkAfter(block);
+                at = 0;
+            }else {
+                Block upper = split(block);
+                if(at > block.count) {
+                    at -= block.count;
+                    block = upper;
+                }
+            }
+        }
+        block.shift(at, 1);
+        block.count++;
+        size++;
+        write(block, at, newCar);
+        addTotals(block, at);
+        cursorBlock = block;
+        cursorOffset = at;
+        cursor++;
+        if(listeners.length > 0) {
+            for(TrainListener listener : listeners)
+                listener.carInserted(newCar);
+        }
+    }
+
+    /**
+     * Removes the car the cursor is pointing at. The cursor moves to the next car, or the previous car if there is no
+     * next car.
+     * @return
+     *      A copy of the removed car.
+     * @throws IllegalArgumentException
+     *      Thrown when the train is empty.
+     */
+    public TrainCar removeCursor() throws IllegalArgumentException{
+        if(cursor < 0)
+            throw new IllegalArgumentException("The list is currently empty!");
+        Block block = cursorBlock;
+        int at = cursorOffset;
+        TrainCar removed = carAt(block, at);
+        removeTotals(block, at);
+        block.shift(at + 1, -1);
+        block.count--;
+        size--;
+        if(at < block.count) {
+            cursorOffset = at;
+        }else if(block.next != null) {
+            cursorBlock = block.next;
+            cursorOffset = 0;
+        }else if(block.count > 0) {
+            cursorOffset = at - 1;
+            cursor--;
+        }else if(block.prev != null) {
+            cursorBlock = block.prev;
+            cursorOffset = block.prev.count - 1;
+            cursor--;
+        }else {
+            cursorBlock = null;
+            cursorOffset = 0;
+            cursor = -1;
+        }
+        if(block.count == 0)
+            unlink(block);
+        else if(block.count < MIN_FILL)
+            rebalance(block);
+        for(TrainListener listener : listeners)
+            listener.carRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Moves the cursor to the next car, unless it is at the tail.
+     */
+    public void cursorForward() {
+        boolean moved = false;
+        if(cursor >= 0 && cursor < size - 1) {
+            if(cursorOffset + 1 < cursorBlock.count) {
+                cursorOffset++;
+            }else {
+                cursorBlock = cursorBlock.next;
+                cursorOffset = 0;
+            }
+            cursor++;
+            moved = true;
+        }
+        fireCursorMoved(true, moved);
+    }
+
+    /**
+     * Moves the cursor to the previous car, unless it is at the head.
+     */
+    public void cursorBackward() {
+        boolean moved = false;
+        if(cursor > 0) {
+            if(cursorOffset > 0) {
+                cursorOffset--;
+            }else {
+                cursorBlock = cursorBlock.prev;
+                cursorOffset = cursorBlock.count - 1;
+            }
+            cursor--;
+            moved = true;
+        }
+        fireCursorMoved(false, moved);
+    }
+
+    /**
+     * Moves the cursor directly to the car at the given position.
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public void seek(int position) throws IllegalArgumentException{
+        checkPosition(position);
+        cursorBlock = find(position);
+        cursorOffset = foundOffset;
+        cursor = position;
+    }
+
+    /**
+     * Returns a copy of the car at the given position without moving the cursor.
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      A copy of the car at that position.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public TrainCar getCar(int position) throws IllegalArgumentException{
+        checkPosition(position);
+        Block block = find(position);
+        return carAt(block, foundOffset);
+    }
+
+    /**
+     * @return
+     *      Returns the position of the cursor, with 0 being the head of the train, or -1 if the train is empty.
+     */
+    public int getCursorIndex() {
+        return cursor;
+    }
+
+    /**
+     * Removes all dangerous cars from the train in one pass that moves each remaining car down over the gaps, across
+     * block boundaries, maintaining the order of the cars. The remaining cars end up in full blocks, and the blocks
+     * left empty are dropped. If the cursor pointed at a removed car, it now points at the next remaining car, or the
+     * previous remaining car if no car follows it.
+     * @return
+     *      The number of cars that were removed.
+     */
+    public int removeDangerousCars() {
+        int removed = 0;
+        if(numDangerousCars > 0) {
+            Block written = head;
+            int writeAt = 0;
+            int kept = 0;
+            int newCursor = -1;
+            boolean cursorRemoved = false;
+            int i = 0;
+            for(Block block = head; block != null; block = block.next) {
+                int n = block.count;
+                for(int r = 0; r < n; r++, i++) {
+                    if((block.flags[r] & DANGEROUS) != 0) {
+                        if(listeners.length > 0) {
+                            TrainCar car = carAt(block, r);
+                            for(TrainListener listener : listeners)
+                                listener.carRemoved(car);
+                        }
+                        removeTotals(block, r);
+                        removed++;
+                        if(i == cursor)
+                            cursorRemoved = true;
+                        continue;
+                    }
+                    if(i == cursor || (cursorRemoved && newCursor < 0))
+                        newCursor = kept;
+                    if(writeAt == BLOCK_SIZE) {
+                        written.count = BLOCK_SIZE;
+                        written = written.next;
+                        writeAt = 0;
+                    }
+                    if(written != block || writeAt != r) {
+                        written.carLengths[writeAt] = block.carLengths[r];
+                        written.carWeights[writeAt] = block.carWeights[r];
+                        written.loadWeights[writeAt] = block.loadWeights[r];
+                        written.loadValues[writeAt] = block.loadValues[r];
+                        written.flags[writeAt] = block.flags[r];
+                        written.nameIds[writeAt] = block.nameIds[r];
+                    }
+                    writeAt++;
+                    kept++;
+                }
+            }
+            size = kept;
+            if(kept == 0) {
+                head = null;
+                tail = null;
+            }else {
+                written.count = writeAt;
+                written.next = null;
+                tail = written;
+            }
+            cursorBlock = null;
+            cursor = -1;
+            if(newCursor < 0)
+                newCursor = size - 1;
+            if(newCursor >= 0)
+                seek(newCursor);
+        }
+        for(TrainListener listener : listeners)
+            listener.dangerousCarsRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Prints the manifest table of the train to the console.
+     */
+    public void printManifest() {
+        try {
+            writeManifest(System.out);
+        }catch(IOException e) {
+            // PrintStream reports errors through checkError() rather than by throwing.
+        }
+    }
+
+    /**
+     * Writes the manifest table printed by printManifest to any Appendable, such as a Writer or a StringBuilder.
+     * @param out
+     *      The destination of the manifest.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeManifest(Appendable out) throws IOException {
+        ManifestWriter writer = new ManifestWriter(out);
+        writeManifest(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the manifest table through a ManifestWriter, straight from the blocks. The writer is not flushed.
+     * @param writer
+     *      The writer the manifest goes through.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeManifest(ManifestWriter writer) throws IOException {
+        writer.writeHeader();
+        int num = 0;
+        for(Block block = head; block != null; block = block.next) {
+            for(int i = 0; i < block.count; i++) {
+                byte bits = block.flags[i];
+                String name = (bits & LOADED) != 0 ? names.get(block.nameIds[i]) : null;
+                writer.writeRow(num + 1, block.carLengths[i], block.carWeights[i], name, block.loadWeights[i],
+                        block.loadValues[i], (bits & DANGEROUS) != 0, num == cursor);
+                num++;
+            }
+        }
+    }
+
+    /**
+     * Prints the summed weight and value of every load with the indicated name, ignoring case, to System.out.
+     * @param name
+     *      The name of the product being searched for.
+     * @throws IllegalArgumentException
+     *      Thrown when the product name produces no results.
+     */
+    public void findProduct(String name) throws IllegalArgumentException{
+        findProduct(name, System.out);
+    }
+
+    /**
+     * Prints the summed weight and value of every load with the indicated name, ignoring case, to the given
+     * PrintStream.
+     * @param name
+     *      The name of the product being searched for.
+     * @param out
+     *      The stream the record is printed to.
+     * @throws IllegalArgumentException
+     *      Thrown when the product name produces no results.
+     */
+    public void findProduct(String name, PrintStream out) throws IllegalArgumentException{
+        ProductLoad found = getProductTotal(name);
+        if(found == null)
+            throw new IllegalArgumentException("No product with that name was found!");
+        ManifestWriter.printProduct(out, name, found);
+    }
+
+    /**
+     * Looks up the combined weight and value of every load with the indicated name, ignoring case.
+     * @param name
+     *      The name of the product being searched for.
+     * @return
+     *      A single ProductLoad record holding the summed weight and value of the product, or null if no load with
+     *      that name is on the train.
+     */
+    public ProductLoad getProductTotal(String name) {
+        if(name == null)
+            return null;
+        int id = ProductCatalog.find(name);
+        if(id < 0 || id >= products.length || products[id] == null)
+            return null;
+        ProductSum total = products[id];
+        return new ProductLoad(name, total.getWeight(), total.getValue(), total.isDangerous());
+    }
+
+    /**
+     * Registers a listener to be told about the train's events.
+     * @param listener
+     *      The listener to add.
+     * @throws IllegalArgumentException
+     *      Thrown when the listener is null.
+     */
+    public void addListener(TrainListener listener) throws IllegalArgumentException{
+        if(listener == null)
+            throw new IllegalArgumentException("The listener has not been created!");
+        TrainListener[] grown = new TrainListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Stops a listener from being told about the train's events.
+     * @param listener
+     *      The listener to remove.
+     * @return
+     *      True if the listener was registered, false otherwise.
+     */
+    public boolean removeListener(TrainListener listener) {
+        for(int i = 0; i < listeners.length; i++) {
+            if(listeners[i] == listener) {
+                TrainListener[] shrunk = new TrainListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return
+     *      Returns the number of cars on the train.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return
+     *      Returns the total length of the train in meters.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * @return
+     *      Returns the total weight of the train, including loads and cars.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return
+     *      Returns the total value of all the loads on the train.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return
+     *      Returns the number of dangerous cars on the train.
+     */
+    public int getNumDangerousCars() {
+        return numDangerousCars;
+    }
+
+    /**
+     * @return
+     *      Returns true if the train contains at least one dangerous car.
+     */
+    public boolean isDangerous() {
+        return numDangerousCars > 0;
+    }
+
+    /**
+     * Returns a neatly formatted String representation of the train, in the same form as a TrainLinkedList.
+     * @return
+     *      A string with the number of cars, length, weight, value and dangerousness of the train.
+     */
+    public String toString() {
+        String isDangerous = "NOT DANGEROUS";
+        if(isDangerous())
+            isDangerous = "DANGEROUS";
+        return "Train: " + size + " cars, " + String.format("%.1f", length) + " meters, "
+                + String.format("%.1f", weight) + " tons, $" + String.format("%.2f", value) + " value, " +
+                isDangerous + " with " + numDangerousCars + " dangerous cars found on the train.";
+    }
+
+    /**
+     * Finds the block holding the car at a position, walking from whichever of the head, the tail and the cursor is
+     * nearest. The offset of the car within the block is left in foundOffset.
+     * Precondition:
+     *      0 <= position < size()
+     * @param position
+     *      The position of the car.
+     * @return
+     *      The block holding the car.
+     */
+    private Block find(int position) {
+        Block block;
+        int start;
+        int fromTail = size - 1 - position;
+        if(cursor >= 0 && Math.abs(position - cursor) <= Math.min(position, fromTail)) {
+            block = cursorBlock;
+            start = cursor - cursorOffset;
+        }else if(position <= fromTail) {
+            block = head;
+            start = 0;
+        }else {
+            block = tail;
+            start = size - tail.count;
+        }
+        while(position < start) {
+            block = block.prev;
+            start -= block.count;
+        }
+        while(position >= start + block.count) {
+            start += block.count;
+            block = block.next;
+        }
+        foundOffset = position - start;
+        return block;
+    }
+
+    /**
+     * Links a new, empty block into the list after another.
+     * @param block
+     *      The block the new one follows.
+     * @return
+     *      The new block.
+     */
+    private Block linkAfter(Block block) {
+        Block added = new Block();
+        added.prev = block;
+        added.next = block.next;
+        if(block.next != null)
+            block.next.prev = added;
+        else
+            tail = added;
+        block.next = added;
+        return added;
+    }
+
+    /**
+     * Moves the upper half of a full block into a new block linked after it.
+     * @param block
+     *      The full block.
+     * @return
+     *      The new block, holding the upper half.
+     */
+    private Block split(Block block) {
+        Block upper = linkAfter(block);
+        int half = block.count / 2;
+        upper.copy(block, half, 0, block.count - half);
+        upper.count = block.count - half;
+        block.count = half;
+        return upper;
+    }
+
+    /**
+     * Takes an empty block out of the list.
+     * @param block
+     *      The block.
+     */
+    private void unlink(Block block) {
+        if(block.prev != null)
+            block.prev.next = block.next;
+        else
+            head = block.next;
+        if(block.next != null)
+            block.next.prev = block.prev;
+        else
+            tail = block.prev;
+        block.prev = null;
+        block.next = null;
+    }
+
+    /**
+     * Merges a block that has fallen under a quarter full into its next or previous block, if the two fit in one.
+     * @param block
+     *      The block.
+     */
+    private void rebalance(Block block) {
+        if(block.next != null && block.count + block.next.count <= BLOCK_SIZE)
+            absorbNext(block);
+        else if(block.prev != null && block.prev.count + block.count <= BLOCK_SIZE)
+            absorbNext(block.prev);
+    }
+
+    /**
+     * Moves every car of the block after a block onto the end of that block, and drops the emptied block. The cursor
+     * follows its car.
+     * @param block
+     *      The block that takes the cars.
+     */
+    private void absorbNext(Block block) {
+        Block next = block.next;
+        block.copy(next, 0, block.count, next.count);
+        if(cursorBlock == next) {
+            cursorBlock = block;
+            cursorOffset += block.count;
+        }
+        block.count += next.count;
+        next.count = 0;
+        unlink(next);
+    }
+
+    /**
+     * Builds a TrainCar, with a ProductLoad if the car is loaded, from the columns of a block.
+     * @param block
+     *      The block.
+     * @param i
+     *      The position of the car in the block.
+     * @return
+     *      The new TrainCar.
+     */
+    private TrainCar carAt(Block block, int i) {
+        TrainCar car = new TrainCar(block.carLengths[i], block.carWeights[i]);
+        if((block.flags[i] & LOADED) != 0)
+            car.setCarLoad(new ProductLoad(names.get(block.nameIds[i]), block.loadWeights[i], block.loadValues[i],
+                    (block.flags[i] & DANGEROUS) != 0));
+        return car;
+    }
+
+    /**
+     * Copies a car into the columns of a block.
+     * @param block
+     *      The block.
+     * @param i
+     *      The position of the car in the block.
+     * @param car
+     *      The car being copied.
+     */
+    private void write(Block block, int i, TrainCar car) {
+        block.carLengths[i] = car.getCarLength();
+        block.carWeights[i] = car.getCarWeight();
+        writeLoad(block, i, car.getCarLoad());
+    }
+
+    /**
+     * Copies a load into the columns of a block.
+     * @param block
+     *      The block.
+     * @param i
+     *      The position of the car in the block.
+     * @param load
+     *      The load being copied, or null for an empty car.
+     */
+    private void writeLoad(Block block, int i, ProductLoad load) {
+        if(load == null) {
+            block.loadWeights[i] = 0;
+            block.loadValues[i] = 0;
+            block.flags[i] = 0;
+            block.nameIds[i] = -1;
+        }else {
+            block.loadWeights[i] = load.getWeight();
+            block.loadValues[i] = load.getValue();
+            block.flags[i] = load.isDangerous() ? LOADED | DANGEROUS : LOADED;
+            block.nameIds[i] = nameId(load.getName());
+        }
+    }
+
+    /**
+     * Finds the id of a load name, giving it the next id if it has not been seen before. Each name id also records the
+     * ProductCatalog id of its product.
+     * @param name
+     *      The load name.
+     * @return
+     *      The id of the name.
+     */
+    private int nameId(String name) {
+        Integer id = nameTable.get(name);
+        if(id == null) {
+            id = names.size();
+            if(id == nameProducts.length)
+                nameProducts = Arrays.copyOf(nameProducts, id * 2);
+            names.add(ProductCatalog.intern(name));
+            nameProducts[id] = ProductCatalog.idOf(name);
+            nameTable.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a car to the train totals and the product index.
+     * @param block
+     *      The block holding the car.
+     * @param i
+     *      The position of the car in the block.
+     */
+    private void addTotals(Block block, int i) {
+        length += block.carLengths[i];
+        weight += block.carWeights[i] + block.loadWeights[i];
+        value += block.loadValues[i];
+        if((block.flags[i] & LOADED) != 0) {
+            boolean dangerous = (block.flags[i] & DANGEROUS) != 0;
+            if(dangerous)
+                numDangerousCars++;
+            int id = nameProducts[block.nameIds[i]];
+            if(id >= products.length)
+                products = Arrays.copyOf(products, Math.max(id + 1, products.length * 2));
+            ProductSum total = products[id];
+            if(total == null) {
+                total = new ProductSum();
+                products[id] = total;
+            }
+            total.add(block.loadWeights[i], block.loadValues[i], dangerous);
+        }
+    }
+
+    /**
+     * Takes a car out of the train totals and the product index.
+     * @param block
+     *      The block holding the car.
+     * @param i
+     *      The position of the car in the block.
+     */
+    private void removeTotals(Block block, int i) {
+        length -= block.carLengths[i];
+        weight -= block.carWeights[i] + block.loadWeights[i];
+        value -= block.loadValues[i];
+        if((block.flags[i] & LOADED) != 0) {
+            boolean dangerous = (block.flags[i] & DANGEROUS) != 0;
+            if(dangerous)
+                numDangerousCars--;
+            int id = nameProducts[block.nameIds[i]];
+            ProductSum total = products[id];
+            if(total != null) {
+                total.remove(block.loadWeights[i], block.loadValues[i], dangerous);
+                if(total.getCount() == 0)
+                    products[id] = null;
+            }
+        }
+    }
+
+    /**
+     * Tells every listener that the cursor was asked to move.
+     * @param forward
+     *      True if the cursor was asked to move toward the tail.
+     * @param moved
+     *      True if the cursor moved.
+     */
+    private void fireCursorMoved(boolean forward, boolean moved) {
+        if(listeners.length == 0)
+            return;
+        TrainCar car = cursor < 0 ? null : carAt(cursorBlock, cursorOffset);
+        for(TrainListener listener : listeners)
+            listener.cursorMoved(car, forward, moved);
+    }
+
+    private void checkPosition(int position) throws IllegalArgumentException{
+        if(position < 0 || position >= size)
+            throw new IllegalArgumentException("There is no car at position " + position + "!");
+    }
+
+    private static void checkCar(TrainCar car) throws IllegalArgumentException{
+        if(car == null)
+            throw new IllegalArgumentException("That car has not been created!");
+        if(!(car.getCarLength() > 0) || !(car.getCarWeight() > 0))
+            throw new IllegalArgumentException("Weight/length values must be greater than 0!");
+    }
+}
@@ -0,0 +1,302 @@
+package com.company;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The AsyncTrainListener hands the events of a TrainLinkedList to another listener on a background thread. Events are
+ * queued as they happen and the background thread delivers them in batches, so the thread changing the train only
+ * pays for putting an event on the queue. Events are delivered in the order they happened. If the queue fills up,
+ * the train waits for the background thread to catch up rather than losing events.
+ *
+ * Events carry the cars and loads themselves, not copies, so a delegate reading a car or load sees it as it is when
+ * the event is delivered. The copy of a changed load's old state made by the train is its own object and does not
+ * change.
+ *
+ * An exception thrown by the delegate does not stop delivery. It is passed to the uncaught exception handler of the
+ * background thread, which prints it by default and can be replaced with setExceptionHandler.
+ *
+ * @author Kirat Singh
+ */
+public class AsyncTrainListener implements TrainListener, Closeable {
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int MOVED = 2;
+    private static final int PURGED = 3;
+    private static final int REPLACED = 4;
+    private static final int LOAD_REPLACED = 5;
+    private static final int LOAD_CHANGED = 6;
+    private static final int FLUSH = 7;
+    private static final int CLOSE = 8;
+
+    /**
+     * A queued event. Only the fields used by its type are set.
+     */
+    private static class Event {
+        private int type;
+        private TrainCar car;
+        private TrainCar newCar;
+        private ProductLoad oldLoad;
+        private ProductLoad newLoad;
+        private boolean forward;
+        private boolean moved;
+        private int count;
+        private CountDownLatch done;
+
+        private Event(int eventType) {
+            type = eventType;
+        }
+    }
+
+    private TrainListener delegate;
+    private BlockingQueue<Event> queue;
+    private int batchSize;
+    private Thread worker;
+    private volatile boolean closed;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a listener that delivers events to the delegate in batches of up to 256, holding at most 65536 events.
+     * @param target
+     *      The listener the events are delivered to.
+     */
+    public AsyncTrainListener(TrainListener target) {
+        this(target, 65536, 256);
+    }
+
+    /**
+     * Creates a listener that delivers events to the delegate on a background thread.
+     * @param target
+     *      The listener the events are delivered to.
+     * @param capacity
+     *      The most events that may be waiting to be delivered.
+     * @param maxBatch
+     *      The most events delivered in one batch.
+     * @throws IllegalArgumentException
+     *      Thrown when the target is null or the capacity or batch size are less than 1.
+     */
+    public AsyncTrainListener(TrainListener target, int capacity, int maxBatch) throws IllegalArgumentException{
+        if(target == null)
+            throw new IllegalArgumentException("The listener has not been created!");
+        if(capacity < 1 || maxBatch < 1)
+            throw new IllegalArgumentException("The capacity and batch size must be greater than 0!");
+        delegate = target;
+        queue = new ArrayBlockingQueue<Event>(capacity);
+        batchSize = maxBatch;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deliver();
+            }
+        }, "train-listener");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void carInserted(TrainCar car) {
+        Event e = new Event(INSERTED);
+        e.car = car;
+        enqueue(e);
+    }
+
+    @Override
+    public void carRemoved(TrainCar car) {
+        Event e = new Event(REMOVED);
+        e.car = car;
+        enqueue(e);
+    }
+
+    @Override
+    public void carReplaced(TrainCar oldCar, TrainCar newCar) {
+        Event e = new Event(REPLACED);
+        e.car = oldCar;
+        e.newCar = newCar;
+        enqueue(e);
+    }
+
+    @Override
+    public void loadReplaced(TrainCar car, ProductLoad oldLoad, ProductLoad newLoad) {
+        Event e = new Event(LOAD_REPLACED);
+        e.car = car;
+        e.oldLoad = oldLoad;
+        e.newLoad = newLoad;
+        enqueue(e);
+    }
+
+    @Override
+    public void loadChanged(TrainCar car, ProductLoad oldLoad, ProductLoad load) {
+        Event e = new Event(LOAD_CHANGED);
+        e.car = car;
+        e.oldLoad = oldLoad;
+        e.newLoad = load;
+        enqueue(e);
+    }
+
+    @Override
+    public void cursorMoved(TrainCar car, boolean forward, boolean moved) {
+        Event e = new Event(MOVED);
+        e.car = car;
+        e.forward = forward;
+        e.moved = moved;
+        enqueue(e);
+    }
+
+    @Override
+    public void dangerousCarsRemoved(int count) {
+        Event e = new Event(PURGED);
+        e.count = count;
+        enqueue(e);
+    }
+
+    /**
+     * Sets the handler told about exceptions thrown by the delegate. By default they go to the handler of the
+     * background thread's ThreadGroup, which prints them to System.err.
+     * @param handler
+     *      The handler, or null for the default.
+     */
+    public void setExceptionHandler(Thread.UncaughtExceptionHandler handler) {
+        worker.setUncaughtExceptionHandler(handler);
+    }
+
+    /**
+     * Waits until every event queued before this call has been delivered. Returns at once if the listener is closed,
+     * or once it has been closed by another thread.
+     * @throws InterruptedException
+     *      Thrown when the calling thread is interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        if(closed)
+            return;
+        Event e = new Event(FLUSH);
+        e.done = new CountDownLatch(1);
+        queue.put(e);
+        if(stopped)
+            discardQueued();
+        e.done.await();
+    }
+
+    /**
+     * Delivers every queued event and stops the background thread. Events reported after closing are dropped, and
+     * calls to flush waiting behind the close return.
+     */
+    @Override
+    public void close() {
+        if(closed)
+            return;
+        closed = true;
+        try {
+            queue.put(new Event(CLOSE));
+            worker.join();
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts an event on the queue, waiting for room if the queue is full.
+     * @param e
+     *      The event.
+     */
+    private void enqueue(Event e) {
+        if(closed)
+            return;
+        try {
+            queue.put(e);
+        }catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if(stopped)
+            discardQueued();
+    }
+
+    /**
+     * Empties the queue once the background thread has stopped, releasing every caller of flush waiting on it. Called
+     * by the background thread as it stops, and by any thread that queued an event after that, so that no event is
+     * left behind with nobody to take it off the queue.
+     */
+    private void discardQueued() {
+        Event e;
+        while((e = queue.poll()) != null) {
+            if(e.type == FLUSH)
+                e.done.countDown();
+        }
+    }
+
+    /**
+     * The body of the background thread, which takes events off the queue in batches and delivers them until the
+     * listener is closed. Whatever is left on the queue after the close is dropped.
+     */
+    private void deliver() {
+        ArrayList<Event> batch = new ArrayList<Event>(batchSize);
+        try {
+            while(true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                for(int i = 0; i < batch.size(); i++) {
+                    Event e = batch.get(i);
+                    if(e.type == CLOSE) {
+                        for(int j = i + 1; j < batch.size(); j++) {
+                            if(batch.get(j).type == FLUSH)
+                                batch.get(j).done.countDown();
+                        }
+                        return;
+                    }
+                    try {
+                        dispatch(e);
+                    }catch(RuntimeException ex) {
+                        // A failing delegate must not stop delivery, or the train would block once the queue filled.
+                        Thread current = Thread.currentThread();
+                        current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                    }
+                }
+                batch.clear();
+            }
+        }catch(InterruptedException e) {
+            // Stop as if closed.
+        }finally {
+            stopped = true;
+            discardQueued();
+        }
+    }
+
+    /**
+     * Delivers a single event to the delegate.
+     * @param e
+     *      The event.
+     */
+    private void dispatch(Event e) {
+        switch(e.type) {
+            case INSERTED:
+                delegate.carInserted(e.car);
+                break;
+            case REMOVED:
+                delegate.carRemoved(e.car);
+                break;
+            case REPLACED:
+                delegate.carReplaced(e.car, e.newCar);
+                break;
+            case LOAD_REPLACED:
+                delegate.loadReplaced(e.car, e.oldLoad, e.newLoad);
+                break;
+            case LOAD_CHANGED:
+                delegate.loadChanged(e.car, e.oldLoad, e.newLoad);
+                break;
+            case MOVED:
+                delegate.cursorMoved(e.car, e.forward, e.moved);
+                break;
+            case PURGED:
+                delegate.dangerousCarsRemoved(e.count);
+                break;
+            case FLUSH:
+                e.done.countDown();
+                break;
+            default:
+                break;
+        }
+    }
+}
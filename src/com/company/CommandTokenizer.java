@@ -0,0 +1,151 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.InputMismatchException;
+
+/**
+ * The CommandTokenizer splits a script of TrainManager commands into lines and whitespace separated tokens. It reads
+ * its input through one large character buffer and scans it by hand, which is much faster than a Scanner for long
+ * scripts. A token may be put in double quotes to include spaces, and a '#' starts a comment that runs to the end of
+ * the line.
+ *
+ * @author Kirat Singh
+ */
+public class CommandTokenizer {
+    private static final int EOF = -1;
+
+    private Reader in;
+    private char[] buffer;
+    private int pos;
+    private int limit;
+    private StringBuilder token;
+    private int lineNumber;
+
+    /**
+     * Creates a tokenizer over a Reader.
+     * @param reader
+     *      The script to read.
+     */
+    public CommandTokenizer(Reader reader) {
+        in = reader;
+        buffer = new char[1 << 16];
+        token = new StringBuilder();
+        lineNumber = 1;
+    }
+
+    /**
+     * @return
+     *      Returns true if there is anything left in the script.
+     * @throws IOException
+     *      Thrown when the script cannot be read.
+     */
+    public boolean hasMoreLines() throws IOException {
+        return peek() != EOF;
+    }
+
+    /**
+     * @return
+     *      Returns the number of the line being read, starting from 1.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Reads the next token on the current line.
+     * @return
+     *      The token, without any quotes around it, or null if there are no more tokens on the line.
+     * @throws IOException
+     *      Thrown when the script cannot be read.
+     */
+    public String nextToken() throws IOException {
+        int c = peek();
+        while(c == ' ' || c == '\t') {
+            pos++;
+            c = peek();
+        }
+        if(c == EOF || c == '\n' || c == '\r' || c == '#')
+            return null;
+        token.setLength(0);
+        if(c == '"') {
+            pos++;
+            c = peek();
+            while(c != '"' && c != EOF && c != '\n' && c != '\r') {
+                token.append((char) c);
+                pos++;
+                c = peek();
+            }
+            if(c == '"')
+                pos++;
+        }else {
+            while(c != EOF && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                token.append((char) c);
+                pos++;
+                c = peek();
+            }
+        }
+        return token.toString();
+    }
+
+    /**
+     * Reads the next token on the current line as a number.
+     * @return
+     *      The number.
+     * @throws IOException
+     *      Thrown when the script cannot be read.
+     * @throws InputMismatchException
+     *      Thrown when there is no token left on the line or the token is not a number.
+     */
+    public double nextDouble() throws IOException, InputMismatchException {
+        String s = nextToken();
+        if(s == null)
+            throw new InputMismatchException("A number was expected on line " + lineNumber + ".");
+        try {
+            return Double.parseDouble(s);
+        }catch(NumberFormatException e) {
+            throw new InputMismatchException("\"" + s + "\" on line " + lineNumber + " is not a number.");
+        }
+    }
+
+    /**
+     * Skips whatever is left of the current line, including its line break.
+     * @throws IOException
+     *      Thrown when the script cannot be read.
+     */
+    public void skipLine() throws IOException {
+        int c = peek();
+        while(c != EOF && c != '\n' && c != '\r') {
+            pos++;
+            c = peek();
+        }
+        if(c == '\r') {
+            pos++;
+            c = peek();
+        }
+        if(c == '\n')
+            pos++;
+        if(c != EOF)
+            lineNumber++;
+    }
+
+    /**
+     * Looks at the next character without consuming it, refilling the buffer when it runs out.
+     * @return
+     *      The next character, or EOF at the end of the script.
+     * @throws IOException
+     *      Thrown when the script cannot be read.
+     */
+    private int peek() throws IOException {
+        if(pos == limit) {
+            int n = in.read(buffer, 0, buffer.length);
+            while(n == 0)
+                n = in.read(buffer, 0, buffer.length);
+            if(n < 0)
+                return EOF;
+            pos = 0;
+            limit = n;
+        }
+        return buffer[pos];
+    }
+}
@@ -0,0 +1,463 @@
+package com.company;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ConcurrentTrainLinkedList is a train that many threads can change and read at the same time. Instead of one
+ * shared cursor, every client opens its own Cursor over the train and works through it. Changes lock only the nodes
+ * they relink: an insert locks the node it goes after, and a removal locks the removed node and the node before it,
+ * always in train order, so operators working on different parts of the train never wait for each other. Reading a
+ * car, moving a cursor and iterating take no locks at all.
+ *
+ * The totals of the train are kept in LongAdder and DoubleAdder counters, so threads updating them at the same time do
+ * not contend. Each total is exact once the changes in progress have finished, but the getters read them one at a time
+ * and may see a change to one total and not yet to another.
+ *
+ * As with a TrainLinkedList, a car can be on only one train at a time: inserting a car claims it, and removing it lets
+ * it go. Each node remembers what its car added to the totals, so when the load of a car on the train is replaced or
+ * changed in place, the difference is added to the totals under the node's lock, and a car removed at the same time
+ * takes out exactly what it put in.
+ *
+ * The list is bounded by two sentinel nodes that hold no car, so every real node always has a node on both sides. A
+ * removed node is marked and unlinked but keeps its own links, so a cursor or iterator standing on it can still find
+ * its way back into the train.
+ *
+ * @author Kirat Singh
+ */
+public class ConcurrentTrainLinkedList implements Iterable<TrainCar> {
+
+    /**
+     * A node of the list. Its links are volatile so that unlocked readers always see fully linked nodes. The counted
+     * fields hold what the node's car added to the totals, and are only used while holding the node's lock.
+     */
+    static class Node {
+        private final ConcurrentTrainLinkedList train;
+        private final TrainCar car;
+        private volatile Node prev;
+        private volatile Node next;
+        private volatile boolean removed;
+
+        private boolean counted;
+        private double countedLength;
+        private double countedWeight;
+        private double countedValue;
+        private boolean countedDangerous;
+
+        private Node(ConcurrentTrainLinkedList nodeTrain, TrainCar nodeCar) {
+            train = nodeTrain;
+            car = nodeCar;
+        }
+    }
+
+    private final Node head;
+    private final Node tail;
+
+    private final LongAdder size;
+    private final DoubleAdder length;
+    private final DoubleAdder weight;
+    private final DoubleAdder value;
+    private final LongAdder numDangerousCars;
+
+    /**
+     * Creates an empty train.
+     */
+    public ConcurrentTrainLinkedList() {
+        head = new Node(this, null);
+        tail = new Node(this, null);
+        head.next = tail;
+        tail.prev = head;
+        size = new LongAdder();
+        length = new DoubleAdder();
+        weight = new DoubleAdder();
+        value = new DoubleAdder();
+        numDangerousCars = new LongAdder();
+    }
+
+    /**
+     * Opens a new cursor over the train, positioned at the head. A cursor belongs to a single client and must not be
+     * shared between threads, but any number of cursors may work on the train at once.
+     * @return
+     *      The new cursor.
+     */
+    public Cursor openCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * @return
+     *      Returns the number of cars on the train.
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * @return
+     *      Returns the total length of the train in meters.
+     */
+    public double getLength() {
+        return length.sum();
+    }
+
+    /**
+     * @return
+     *      Returns the total weight of the train, including loads and cars.
+     */
+    public double getWeight() {
+        return weight.sum();
+    }
+
+    /**
+     * @return
+     *      Returns the total value of all the loads on the train.
+     */
+    public double getValue() {
+        return value.sum();
+    }
+
+    /**
+     * @return
+     *      Returns the number of dangerous cars on the train.
+     */
+    public int getNumDangerousCars() {
+        return numDangerousCars.intValue();
+    }
+
+    /**
+     * @return
+     *      Returns true if the train contains at least one dangerous car.
+     */
+    public boolean isDangerous() {
+        return numDangerousCars.sum() > 0;
+    }
+
+    /**
+     * Returns an iterator over the cars of the train from the head to the tail. The iterator takes no locks and never
+     * fails because of changes made while it runs; it sees every car that stays on the train for the whole iteration
+     * and may or may not see cars inserted or removed during it.
+     * @return
+     *      An iterator over the cars in train order.
+     */
+    public Iterator<TrainCar> iterator() {
+        return new Iterator<TrainCar>() {
+            private Node next = live(head.next);
+
+            @Override
+            public boolean hasNext() {
+                return next != tail;
+            }
+
+            @Override
+            public TrainCar next() {
+                if(next == tail)
+                    throw new NoSuchElementException();
+                TrainCar car = next.car;
+                next = live(next.next);
+                return car;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Use a Cursor to remove cars from the train.");
+            }
+        };
+    }
+
+    /**
+     * Returns a neatly formatted String representation of the train, in the same form as a TrainLinkedList.
+     * @return
+     *      A string with the number of cars, length, weight, value and dangerousness of the train.
+     */
+    public String toString() {
+        int dangerous = getNumDangerousCars();
+        String isDangerous = dangerous > 0 ? "DANGEROUS" : "NOT DANGEROUS";
+        return "Train: " + size() + " cars, " + String.format("%.1f", getLength()) + " meters, "
+                + String.format("%.1f", getWeight()) + " tons, $" + String.format("%.2f", getValue()) + " value, " +
+                isDangerous + " with " + dangerous + " dangerous cars found on the train.";
+    }
+
+    /**
+     * Links a new node in after a node, which is locked and checked to still be on the train first. If the node has
+     * been removed, the new node goes after the nearest node before it that is still on the train.
+     * @param after
+     *      The node the new node should follow.
+     * @param node
+     *      The new node.
+     */
+    private void linkAfter(Node after, Node node) {
+        while(true) {
+            while(after.removed)
+                after = after.prev;
+            synchronized(after) {
+                if(after.removed)
+                    continue;
+                Node next = after.next;
+                node.prev = after;
+                node.next = next;
+                next.prev = node;
+                after.next = node;
+            }
+            synchronized(node) {
+                if(!node.removed) {
+                    addTotals(node);
+                    node.counted = true;
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Unlinks a node, locking the node before it and then the node itself.
+     * @param node
+     *      The node to remove.
+     * @return
+     *      True if this call removed the node, false if it had already been removed.
+     */
+    private boolean unlink(Node node) {
+        while(true) {
+            Node prev = node.prev;
+            synchronized(prev) {
+                synchronized(node) {
+                    if(node.removed)
+                        return false;
+                    if(prev.removed || node.prev != prev)
+                        continue;
+                    Node next = node.next;
+                    node.removed = true;
+                    prev.next = next;
+                    next.prev = prev;
+                    if(node.counted)
+                        removeTotals(node);
+                }
+            }
+            release(node.car);
+            return true;
+        }
+    }
+
+    /**
+     * Adds the car of a node to the totals and remembers what was added. Called while holding the node's lock.
+     * @param node
+     *      The node.
+     */
+    private void addTotals(Node node) {
+        TrainCar car = node.car;
+        node.countedLength = car.getCarLength();
+        node.countedWeight = car.getCarWeight();
+        node.countedValue = 0;
+        node.countedDangerous = false;
+        if(!car.isEmpty()) {
+            ProductLoad load = car.getCarLoad();
+            node.countedWeight += load.getWeight();
+            node.countedValue = load.getValue();
+            node.countedDangerous = load.isDangerous();
+        }
+        size.increment();
+        length.add(node.countedLength);
+        weight.add(node.countedWeight);
+        value.add(node.countedValue);
+        if(node.countedDangerous)
+            numDangerousCars.increment();
+    }
+
+    /**
+     * Takes out of the totals what the car of a node added to them. Called while holding the node's lock.
+     * @param node
+     *      The node.
+     */
+    private void removeTotals(Node node) {
+        size.decrement();
+        length.add(-node.countedLength);
+        weight.add(-node.countedWeight);
+        value.add(-node.countedValue);
+        if(node.countedDangerous)
+            numDangerousCars.decrement();
+    }
+
+    /**
+     * Brings the totals up to date after the load of a car on a ConcurrentTrainLinkedList has been replaced or changed
+     * in place. Called by the car. Nothing is done if the car has already been removed.
+     * @param node
+     *      The node holding the car.
+     */
+    static void loadChanged(Node node) {
+        synchronized(node) {
+            if(!node.counted || node.removed)
+                return;
+            node.train.removeTotals(node);
+            node.train.addTotals(node);
+        }
+    }
+
+    /**
+     * Claims a car for a node, so that it cannot be put on another train and its load changes reach this train.
+     * @param node
+     *      The new node holding the car.
+     * @throws IllegalArgumentException
+     *      Thrown when the car is already on a train.
+     */
+    private static void claim(Node node) throws IllegalArgumentException{
+        TrainCar car = node.car;
+        synchronized(car) {
+            if(car.node != null || car.sharedNode != null)
+                throw new IllegalArgumentException("That car is already on a train!");
+            car.sharedNode = node;
+        }
+    }
+
+    /**
+     * Lets go of a removed car, so that it can be put on a train again.
+     * @param car
+     *      The car.
+     */
+    private static void release(TrainCar car) {
+        synchronized(car) {
+            car.sharedNode = null;
+        }
+    }
+
+    /**
+     * Steps forward from a node over any removed nodes.
+     * @param node
+     *      The node to start from.
+     * @return
+     *      The first node at or after it that is on the train, which may be the tail sentinel.
+     */
+    private Node live(Node node) {
+        while(node != tail && node.removed)
+            node = node.next;
+        return node;
+    }
+
+    /**
+     * A client's own cursor over a ConcurrentTrainLinkedList. It offers the same operations as the cursor of a
+     * TrainLinkedList. If another client removes the car a cursor is on, the cursor moves to the next car still on the
+     * train, or the previous one if there is none, the next time it is used.
+     */
+    public class Cursor {
+        private Node node;
+
+        private Cursor() {
+            node = head;
+        }
+
+        /**
+         * @return
+         *      Returns the car the cursor references.
+         * @throws IllegalArgumentException
+         *      Thrown when the train is empty.
+         */
+        public TrainCar getCursorData() throws IllegalArgumentException{
+            Node current = current();
+            if(current == head)
+                throw new IllegalArgumentException("The List is currently empty!");
+            return current.car;
+        }
+
+        /**
+         * Inserts a car into the train after the cursor, or at the head if the train is empty, and moves the cursor to
+         * it.
+         * @param newCar
+         *      The car to insert.
+         * @throws IllegalArgumentException
+         *      Thrown when the new car is null, already on a train, or its weight/length are invalid.
+         */
+        public void insertAfterCursor(TrainCar newCar) throws IllegalArgumentException{
+            if(newCar == null)
+                throw new IllegalArgumentException("That car has not been created!");
+            if(!(newCar.getCarLength() > 0) || !(newCar.getCarWeight() > 0))
+                throw new IllegalArgumentException("Weight/length values must be greater than 0!");
+            Node added = new Node(ConcurrentTrainLinkedList.this, newCar);
+            claim(added);
+            linkAfter(current(), added);
+            node = added;
+        }
+
+        /**
+         * Removes the car the cursor references. The cursor moves to the next car, or the previous car if there is no
+         * next car.
+         * @return
+         *      The removed car.
+         * @throws IllegalArgumentException
+         *      Thrown when the train is empty.
+         */
+        public TrainCar removeCursor() throws IllegalArgumentException{
+            while(true) {
+                Node current = current();
+                if(current == head)
+                    throw new IllegalArgumentException("The list is currently empty!");
+                if(unlink(current)) {
+                    node = current;
+                    current();
+                    return current.car;
+                }
+            }
+        }
+
+        /**
+         * Moves the cursor to the next car.
+         * @return
+         *      True if the cursor moved, false if it is at the tail or the train is empty.
+         */
+        public boolean cursorForward() {
+            Node current = current();
+            if(current == head)
+                return false;
+            Node next = live(current.next);
+            if(next == tail)
+                return false;
+            node = next;
+            return true;
+        }
+
+        /**
+         * Moves the cursor to the previous car.
+         * @return
+         *      True if the cursor moved, false if it is at the head or the train is empty.
+         */
+        public boolean cursorBackward() {
+            Node current = current();
+            if(current == head)
+                return false;
+            Node prev = current.prev;
+            while(prev != head && prev.removed)
+                prev = prev.prev;
+            if(prev == head)
+                return false;
+            node = prev;
+            return true;
+        }
+
+        /**
+         * Finds the node the cursor references, moving the cursor off a removed node first.
+         * @return
+         *      The node, or the head sentinel if the train is empty.
+         */
+        private Node current() {
+            if(node == head) {
+                Node first = live(head.next);
+                if(first != tail)
+                    node = first;
+                return node;
+            }
+            if(!node.removed)
+                return node;
+            Node next = live(node.next);
+            if(next != tail) {
+                node = next;
+                return node;
+            }
+            Node prev = node.prev;
+            while(prev != head && prev.removed)
+                prev = prev.prev;
+            node = prev;
+            if(node == head)
+                return current();
+            return node;
+        }
+    }
+}
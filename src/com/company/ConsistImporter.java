@@ -0,0 +1,802 @@
+package com.company;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The ConsistImporter builds trains from consist files sent by other systems, which can hold hundreds of thousands
+ * of cars. It reads two formats, and tells them apart by their first bytes:
+ * <ul>
+ *     <li>CSV, one car per line: "length,weight" for an empty car, or "length,weight,product,load weight,value,
+ *     dangerous" for a loaded one. The dangerous flag is y/n, yes/no, true/false or 1/0. Product names holding
+ *     commas or quotes are put in double quotes, with a quote inside the name written twice. Blank lines and lines
+ *     starting with '#' are skipped, and so is a first line that does not start with a number, which is taken to be a
+ *     header.</li>
+ *     <li>Binary: a magic number and version, followed by car records laid out as a TrainFile stores them, so a car
+ *     takes 38 bytes, with a name record written before the first car that uses each product name.</li>
+ * </ul>
+ *
+ * The input is streamed: it is read in chunks of whole lines or records, and each chunk is parsed by a pool of worker
+ * threads into a train of its own, with its TrainIndex and product totals already built. The chunk trains are coupled
+ * together in file order, each in O(log n) time, and the result is coupled to the end of the target train once the
+ * whole file has been read. Only a few chunks are in flight at a time, so memory use does not grow with the file
+ * beyond the cars themselves. A bad line or record stops the import and leaves the target train as it was.
+ *
+ * @author Kirat Singh
+ */
+public class ConsistImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final int MAGIC = 0x54524E43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+            1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int threads;
+    private final int chunkSize;
+
+    /**
+     * Creates an importer with one worker thread per processor and chunks of DEFAULT_CHUNK_SIZE bytes.
+     */
+    public ConsistImporter() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an importer.
+     * @param workerThreads
+     *      The number of threads that parse chunks.
+     * @param chunkBytes
+     *      The number of bytes read for each chunk. A chunk is made longer if a single line does not fit in it.
+     * @throws IllegalArgumentException
+     *      Thrown when there are no worker threads or the chunks are empty.
+     */
+    public ConsistImporter(int workerThreads, int chunkBytes) throws IllegalArgumentException{
+        if(workerThreads < 1)
+            throw new IllegalArgumentException("The importer needs at least one worker thread!");
+        if(chunkBytes < 1)
+            throw new IllegalArgumentException("The chunk size must be greater than 0!");
+        threads = workerThreads;
+        chunkSize = chunkBytes;
+    }
+
+    /**
+     * Reads a consist, in either format, and couples its cars to the end of a train, in file order. Like append, the
+     * import is not recorded by the train's journal, which is cleared, and the cursor does not move unless the train
+     * was empty, in which case it references the head. The stream is read to its end but not closed.
+     * @param train
+     *      The train the cars are added to.
+     * @param in
+     *      The consist.
+     * @return
+     *      The number of cars imported.
+     * @throws IOException
+     *      Thrown when the stream cannot be read, or holds a line or record that is not a valid car. No car is added
+     *      to the train in that case.
+     * @throws IllegalArgumentException
+     *      Thrown when the train or the stream is null.
+     */
+    public int importTo(TrainLinkedList train, InputStream in) throws IOException, IllegalArgumentException{
+        if(train == null)
+            throw new IllegalArgumentException("That train has not been created!");
+        if(in == null)
+            throw new IllegalArgumentException("There is no consist to read!");
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int created;
+
+            @Override
+            public synchronized Thread newThread(Runnable task) {
+                Thread worker = new Thread(task, "consist-importer-" + ++created);
+                worker.setDaemon(true);
+                return worker;
+            }
+        });
+        try {
+            TrainLinkedList imported = new Reader(in, pool).read();
+            int count = imported.size();
+            train.append(imported);
+            return count;
+        }finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes a train in the binary consist format, from the head to the tail. The stream is flushed but not closed.
+     * @param train
+     *      The train to write.
+     * @param out
+     *      The destination.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     * @throws IllegalArgumentException
+     *      Thrown when a load's name is longer than 65535 bytes.
+     */
+    public static void writeBinary(TrainLinkedList train, OutputStream out)
+            throws IOException, IllegalArgumentException{
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        HashMap<String, Integer> nameIds = new HashMap<String, Integer>();
+        for(TrainCar car : train) {
+            int nameId = -1;
+            byte flags = 0;
+            double loadWeight = 0;
+            double loadValue = 0;
+            if(!car.isEmpty()) {
+                ProductLoad load = car.getCarLoad();
+                flags = load.isDangerous() ? TrainFile.LOADED | TrainFile.DANGEROUS : TrainFile.LOADED;
+                loadWeight = load.getWeight();
+                loadValue = load.getValue();
+                if(load.getName() != null) {
+                    Integer id = nameIds.get(load.getName());
+                    if(id == null) {
+                        byte[] bytes = load.getName().getBytes(UTF_8);
+                        if(bytes.length > 0xFFFF)
+                            throw new IllegalArgumentException("Load names are limited to 65535 bytes!");
+                        id = nameIds.size();
+                        nameIds.put(load.getName(), id);
+                        data.writeByte(TrainFile.NAME_RECORD);
+                        data.writeShort(bytes.length);
+                        data.write(bytes);
+                    }
+                    nameId = id;
+                }
+            }
+            data.writeByte(TrainFile.CAR_RECORD);
+            data.writeDouble(car.getCarLength());
+            data.writeDouble(car.getCarWeight());
+            data.writeDouble(loadWeight);
+            data.writeDouble(loadValue);
+            data.writeByte(flags);
+            data.writeInt(nameId);
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes a train in the CSV consist format, with a header line, from the head to the tail.
+     * @param train
+     *      The train to write.
+     * @param out
+     *      The destination.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public static void writeCsv(TrainLinkedList train, Appendable out) throws IOException {
+        out.append("length,weight,product,load weight,value,dangerous\n");
+        for(TrainCar car : train) {
+            out.append(Double.toString(car.getCarLength())).append(',').append(Double.toString(car.getCarWeight()));
+            if(!car.isEmpty()) {
+                ProductLoad load = car.getCarLoad();
+                String name = load.getName() == null ? "" : load.getName();
+                out.append(',');
+                if(name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || !name.trim().equals(name))
+                    out.append('"').append(name.replace("\"", "\"\"")).append('"');
+                else
+                    out.append(name);
+                out.append(',').append(Double.toString(load.getWeight()))
+                        .append(',').append(Double.toString(load.getValue()))
+                        .append(',').append(load.isDangerous() ? 'y' : 'n');
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Splits one consist stream into chunks, hands them to the worker threads and couples the parsed chunks together
+     * in order.
+     */
+    private class Reader {
+        private final InputStream in;
+        private final ExecutorService pool;
+        private final ArrayDeque<Future<Chunk>> inFlight;
+        private final TrainLinkedList imported;
+        private byte[] carry;
+        private int carried;
+        private boolean ended;
+        private boolean started;
+        private long lines;
+        private long offset;
+        private int cars;
+        private String[] names;
+        private int nameCount;
+
+        /**
+         * Creates a reader over a stream.
+         * @param stream
+         *      The consist.
+         * @param workers
+         *      The worker threads.
+         */
+        private Reader(InputStream stream, ExecutorService workers) {
+            in = stream;
+            pool = workers;
+            inFlight = new ArrayDeque<Future<Chunk>>();
+            imported = new TrainLinkedList();
+            carry = new byte[0];
+            names = new String[16];
+        }
+
+        /**
+         * Reads the whole stream.
+         * @return
+         *      A train holding every car of the consist.
+         * @throws IOException
+         *      Thrown when the stream cannot be read or is not a valid consist.
+         */
+        private TrainLinkedList read() throws IOException {
+            byte[] start = new byte[HEADER_SIZE];
+            int read = fill(start, 0);
+            boolean binary = read == HEADER_SIZE && ByteBuffer.wrap(start).getInt(0) == MAGIC;
+            if(binary) {
+                int version = ByteBuffer.wrap(start).getInt(4);
+                if(version != VERSION)
+                    throw new IOException("Unsupported consist version " + version + ".");
+                offset = HEADER_SIZE;
+            }else {
+                carry = start;
+                carried = read;
+            }
+            while(!ended || carried > 0) {
+                byte[] block = nextBlock();
+                Chunk chunk = binary ? binaryChunk(block) : csvChunk(block);
+                if(chunk != null)
+                    submit(chunk);
+            }
+            while(!inFlight.isEmpty())
+                couple();
+            return imported;
+        }
+
+        /**
+         * Reads the next block of the stream, with the bytes left over from the last block in front.
+         * @return
+         *      The block, filled up to its end unless the stream has ended.
+         * @throws IOException
+         *      Thrown when the stream cannot be read.
+         */
+        private byte[] nextBlock() throws IOException {
+            byte[] block = new byte[Math.max(chunkSize, carried * 2)];
+            System.arraycopy(carry, 0, block, 0, carried);
+            int filled = ended ? carried : fill(block, carried);
+            carried = 0;
+            return filled == block.length ? block : Arrays.copyOf(block, filled);
+        }
+
+        /**
+         * Reads from the stream until a buffer is full or the stream ends.
+         * @param buffer
+         *      The buffer.
+         * @param from
+         *      The first free byte of the buffer.
+         * @return
+         *      The number of bytes in the buffer.
+         * @throws IOException
+         *      Thrown when the stream cannot be read.
+         */
+        private int fill(byte[] buffer, int from) throws IOException {
+            while(from < buffer.length) {
+                int n = in.read(buffer, from, buffer.length - from);
+                if(n < 0) {
+                    ended = true;
+                    break;
+                }
+                from += n;
+            }
+            return from;
+        }
+
+        /**
+         * Cuts a block of CSV after its last complete line, keeping the rest for the next block.
+         * @param block
+         *      The block.
+         * @return
+         *      The chunk of whole lines, or null if the block holds no complete line yet.
+         */
+        private Chunk csvChunk(byte[] block) {
+            int end = block.length;
+            if(!ended) {
+                end = lastIndexOf(block, (byte) '\n') + 1;
+                keep(block, end);
+                if(end == 0)
+                    return null;
+            }
+            Chunk chunk = new Chunk(block, end, !started);
+            started = true;
+            return chunk;
+        }
+
+        /**
+         * Cuts a block of binary records after its last complete record, keeping the rest for the next block. The
+         * name records are read here, so the chunk only needs the names defined before its end.
+         * @param block
+         *      The block.
+         * @return
+         *      The chunk of whole records, or null if the block holds no complete record yet.
+         * @throws IOException
+         *      Thrown when the block holds a record that is not a name or car record, or the stream ends inside a
+         *      record.
+         */
+        private Chunk binaryChunk(byte[] block) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            int at = 0;
+            int firstCar = cars;
+            while(at < block.length) {
+                byte type = block[at];
+                int size;
+                if(type == TrainFile.CAR_RECORD) {
+                    size = TrainFile.CAR_RECORD_SIZE;
+                }else if(type == TrainFile.NAME_RECORD) {
+                    size = at + 3 <= block.length ? 3 + (buffer.getShort(at + 1) & 0xFFFF) : 3;
+                }else {
+                    throw new IOException("The consist is damaged at byte " + (offset + at) + ".");
+                }
+                if(at + size > block.length)
+                    break;
+                if(type == TrainFile.NAME_RECORD) {
+                    if(nameCount == names.length)
+                        names = Arrays.copyOf(names, nameCount * 2);
+                    names[nameCount++] = new String(block, at + 3, size - 3, UTF_8);
+                }else {
+                    cars++;
+                }
+                at += size;
+            }
+            if(ended && at < block.length)
+                throw new IOException("The consist ends in the middle of a record at byte " + (offset + at) + ".");
+            keep(block, at);
+            Chunk chunk = new Chunk(block, at, names, nameCount, firstCar);
+            offset += at;
+            return at == 0 ? null : chunk;
+        }
+
+        /**
+         * Keeps the bytes of a block from a point on, to go in front of the next block.
+         * @param block
+         *      The block.
+         * @param from
+         *      The first byte kept.
+         */
+        private void keep(byte[] block, int from) {
+            carried = block.length - from;
+            if(carry.length < carried)
+                carry = new byte[Math.max(carried, chunkSize)];
+            System.arraycopy(block, from, carry, 0, carried);
+        }
+
+        /**
+         * Hands a chunk to the worker threads, first coupling the oldest chunk if too many are in flight.
+         * @param chunk
+         *      The chunk.
+         * @throws IOException
+         *      Thrown when the oldest chunk is not valid.
+         */
+        private void submit(Chunk chunk) throws IOException {
+            if(inFlight.size() >= threads * 2)
+                couple();
+            inFlight.add(pool.submit(chunk));
+        }
+
+        /**
+         * Waits for the oldest chunk in flight and couples its cars to the imported train.
+         * @throws IOException
+         *      Thrown when the chunk is not valid.
+         */
+        private void couple() throws IOException {
+            Chunk chunk;
+            try {
+                chunk = inFlight.remove().get();
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The import was interrupted.");
+            }catch(ExecutionException e) {
+                if(e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if(e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new IOException(e.getCause());
+            }
+            if(chunk.error != null) {
+                if(chunk.names == null)
+                    throw new IOException("Line " + (lines + chunk.errorAt) + " of the consist: " + chunk.error);
+                throw new IOException("Car " + (chunk.firstCar + chunk.errorAt) + " of the consist: " + chunk.error);
+            }
+            lines += chunk.lines;
+            imported.append(chunk.train);
+        }
+    }
+
+    /**
+     * A run of whole lines or records of a consist, which a worker thread parses into a train of its own.
+     */
+    private static class Chunk implements Callable<Chunk> {
+        private final byte[] data;
+        private final int end;
+        private final boolean first;
+        private final String[] names;
+        private final int nameCount;
+        private final int firstCar;
+
+        private TrainLinkedList train;
+        private int lines;
+        private String error;
+        private int errorAt;
+
+        private final int[] fieldStart = new int[6];
+        private final int[] fieldEnd = new int[6];
+        private final boolean[] quoted = new boolean[6];
+        private final byte[][] cachedBytes = new byte[64][];
+        private final String[] cachedNames = new String[64];
+
+        /**
+         * Creates a chunk of CSV lines.
+         * @param block
+         *      The bytes of the chunk.
+         * @param length
+         *      The number of bytes of whole lines.
+         * @param firstChunk
+         *      True if the chunk starts the consist, so its first line may be a header.
+         */
+        private Chunk(byte[] block, int length, boolean firstChunk) {
+            data = block;
+            end = length;
+            first = firstChunk;
+            names = null;
+            nameCount = 0;
+            firstCar = 0;
+        }
+
+        /**
+         * Creates a chunk of binary records.
+         * @param block
+         *      The bytes of the chunk.
+         * @param length
+         *      The number of bytes of whole records.
+         * @param nameTable
+         *      The load names defined so far, by number.
+         * @param names
+         *      The number of load names defined before the end of the chunk.
+         * @param carsBefore
+         *      The number of cars in the consist before this chunk.
+         */
+        private Chunk(byte[] block, int length, String[] nameTable, int names, int carsBefore) {
+            data = block;
+            end = length;
+            first = false;
+            this.names = nameTable;
+            nameCount = names;
+            firstCar = carsBefore;
+        }
+
+        /**
+         * Parses the chunk into a train.
+         * @return
+         *      This chunk, holding either the train or the first error found.
+         */
+        @Override
+        public Chunk call() {
+            int expected = names == null ? end / 24 : end / TrainFile.CAR_RECORD_SIZE;
+            ArrayList<TrainCar> cars = new ArrayList<TrainCar>(expected);
+            try {
+                if(names == null)
+                    parseCsv(cars);
+                else
+                    parseBinary(cars);
+            }catch(IllegalArgumentException e) {
+                error = e.getMessage();
+                return this;
+            }
+            train = new TrainLinkedList();
+            train.insertAllAfterCursor(cars);
+            return this;
+        }
+
+        /**
+         * Parses the lines of the chunk.
+         * @param cars
+         *      The list the cars are added to.
+         * @throws IllegalArgumentException
+         *      Thrown when a line is not a valid car, after errorAt has been set to its number within the chunk.
+         */
+        private void parseCsv(ArrayList<TrainCar> cars) throws IllegalArgumentException{
+            int at = 0;
+            while(at < end) {
+                int lineEnd = at;
+                while(lineEnd < end && data[lineEnd] != '\n')
+                    lineEnd++;
+                lines++;
+                errorAt = lines;
+                int stop = lineEnd > at && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                TrainCar car = parseLine(at, stop, first && lines == 1);
+                if(car != null)
+                    cars.add(car);
+                at = lineEnd + 1;
+            }
+        }
+
+        /**
+         * Parses one CSV line.
+         * @param from
+         *      The first byte of the line.
+         * @param to
+         *      The byte after the line.
+         * @param header
+         *      True if the line may be a header.
+         * @return
+         *      The car, or null if the line is blank, a comment or a header.
+         * @throws IllegalArgumentException
+         *      Thrown when the line is not a valid car.
+         */
+        private TrainCar parseLine(int from, int to, boolean header) throws IllegalArgumentException{
+            from = skipSpaces(from, to);
+            if(from == to || data[from] == '#')
+                return null;
+            if(header && !isNumberStart(data[from]))
+                return null;
+            int fields = split(from, to);
+            if(fields != 2 && fields != 6)
+                throw new IllegalArgumentException("Expected 2 or 6 fields but found " + fields + "!");
+            double carLength = number(0);
+            double carWeight = number(1);
+            if(!(carLength > 0) || !(carWeight > 0))
+                throw new IllegalArgumentException("Weight/length values must be greater than 0!");
+            TrainCar car = new TrainCar(carLength, carWeight);
+            if(fields == 6 && !(fieldStart[2] == fieldEnd[2] && !quoted[2] && fieldStart[3] == fieldEnd[3]
+                    && fieldStart[4] == fieldEnd[4] && fieldStart[5] == fieldEnd[5]))
+                car.setCarLoad(new ProductLoad(name(2), number(3), number(4), dangerous(5)));
+            return car;
+        }
+
+        /**
+         * Finds the fields of a CSV line, with the spaces around them trimmed and the quotes around a quoted field
+         * left out.
+         * @param from
+         *      The first byte of the line, which is not a space.
+         * @param to
+         *      The byte after the line.
+         * @return
+         *      The number of fields.
+         * @throws IllegalArgumentException
+         *      Thrown when the line has more than 6 fields or a quoted field is not closed.
+         */
+        private int split(int from, int to) throws IllegalArgumentException{
+            int fields = 0;
+            int at = from;
+            while(true) {
+                if(fields == fieldStart.length)
+                    throw new IllegalArgumentException("Expected 2 or 6 fields but found more!");
+                at = skipSpaces(at, to);
+                int fieldTo;
+                if(at < to && data[at] == '"') {
+                    quoted[fields] = true;
+                    fieldStart[fields] = ++at;
+                    while(true) {
+                        if(at >= to)
+                            throw new IllegalArgumentException("A quoted name is not closed!");
+                        if(data[at] == '"') {
+                            if(at + 1 < to && data[at + 1] == '"')
+                                at += 2;
+                            else
+                                break;
+                        }else {
+                            at++;
+                        }
+                    }
+                    fieldEnd[fields] = at;
+                    at = skipSpaces(at + 1, to);
+                    if(at < to && data[at] != ',')
+                        throw new IllegalArgumentException("Unexpected text after a quoted name!");
+                }else {
+                    quoted[fields] = false;
+                    fieldStart[fields] = at;
+                    while(at < to && data[at] != ',')
+                        at++;
+                    fieldTo = at;
+                    while(fieldTo > fieldStart[fields] && (data[fieldTo - 1] == ' ' || data[fieldTo - 1] == '\t'))
+                        fieldTo--;
+                    fieldEnd[fields] = fieldTo;
+                }
+                fields++;
+                if(at >= to)
+                    return fields;
+                at++;
+            }
+        }
+
+        /**
+         * Parses a field as a number. Plain decimals with up to 15 digits are converted directly, which gives the
+         * same double as Double.parseDouble; anything else is handed to Double.parseDouble.
+         * @param field
+         *      The field.
+         * @return
+         *      The number.
+         * @throws IllegalArgumentException
+         *      Thrown when the field is not a number.
+         */
+        private double number(int field) throws IllegalArgumentException{
+            int at = fieldStart[field];
+            int to = fieldEnd[field];
+            boolean negative = at < to && data[at] == '-';
+            if(at < to && (data[at] == '-' || data[at] == '+'))
+                at++;
+            long mantissa = 0;
+            int digits = 0;
+            int fraction = -1;
+            for(; at < to; at++) {
+                byte b = data[at];
+                if(b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if(fraction >= 0)
+                        fraction++;
+                }else if(b == '.' && fraction < 0) {
+                    fraction = 0;
+                }else {
+                    break;
+                }
+            }
+            if(at == to && digits > 0 && digits <= 15) {
+                double result = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+                return negative ? -result : result;
+            }
+            String text = new String(data, fieldStart[field], fieldEnd[field] - fieldStart[field], UTF_8);
+            try {
+                return Double.parseDouble(text);
+            }catch(NumberFormatException e) {
+                throw new IllegalArgumentException("\"" + text + "\" is not a number!");
+            }
+        }
+
+        /**
+         * Reads a field as a product name. The unquoted names seen by the chunk are kept in a small table, so the many
+         * loads of one product do not each decode a new String.
+         * @param field
+         *      The field.
+         * @return
+         *      The name.
+         */
+        private String name(int field) {
+            int from = fieldStart[field];
+            int to = fieldEnd[field];
+            if(quoted[field])
+                return new String(data, from, to - from, UTF_8).replace("\"\"", "\"");
+            int hash = 0;
+            for(int i = from; i < to; i++)
+                hash = 31 * hash + data[i];
+            int slot = (hash ^ (hash >>> 16)) & (cachedNames.length - 1);
+            byte[] cached = cachedBytes[slot];
+            if(cached != null && cached.length == to - from) {
+                int i = 0;
+                while(i < cached.length && cached[i] == data[from + i])
+                    i++;
+                if(i == cached.length)
+                    return cachedNames[slot];
+            }
+            String name = new String(data, from, to - from, UTF_8);
+            cachedBytes[slot] = Arrays.copyOfRange(data, from, to);
+            cachedNames[slot] = name;
+            return name;
+        }
+
+        /**
+         * Reads a field as a dangerous flag.
+         * @param field
+         *      The field.
+         * @return
+         *      True for y, yes, true or 1, false for n, no, false or 0, in any case.
+         * @throws IllegalArgumentException
+         *      Thrown when the field is none of those.
+         */
+        private boolean dangerous(int field) throws IllegalArgumentException{
+            if(fieldEnd[field] - fieldStart[field] == 1) {
+                byte b = data[fieldStart[field]];
+                if(b == 'y' || b == 'Y' || b == '1')
+                    return true;
+                if(b == 'n' || b == 'N' || b == '0')
+                    return false;
+            }
+            String flag = new String(data, fieldStart[field], fieldEnd[field] - fieldStart[field], UTF_8);
+            if(flag.equalsIgnoreCase("yes") || flag.equalsIgnoreCase("true")) {
+                return true;
+            }else if(flag.equalsIgnoreCase("no") || flag.equalsIgnoreCase("false")) {
+                return false;
+            }
+            throw new IllegalArgumentException("That option is not valid!(Must be y/n)");
+        }
+
+        /**
+         * Parses the car records of the chunk, skipping its name records, which the Reader has already read.
+         * @param cars
+         *      The list the cars are added to.
+         * @throws IllegalArgumentException
+         *      Thrown when a record is not a valid car, after errorAt has been set to its number within the chunk.
+         */
+        private void parseBinary(ArrayList<TrainCar> cars) throws IllegalArgumentException{
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, end);
+            int at = 0;
+            while(at < end) {
+                if(data[at] == TrainFile.NAME_RECORD) {
+                    at += 3 + (buffer.getShort(at + 1) & 0xFFFF);
+                    continue;
+                }
+                errorAt = cars.size() + 1;
+                double carLength = buffer.getDouble(at + 1);
+                double carWeight = buffer.getDouble(at + 9);
+                if(!(carLength > 0) || !(carWeight > 0))
+                    throw new IllegalArgumentException("Weight/length values must be greater than 0!");
+                TrainCar car = new TrainCar(carLength, carWeight);
+                byte flags = data[at + 33];
+                if((flags & TrainFile.LOADED) != 0) {
+                    int nameId = buffer.getInt(at + 34);
+                    if(nameId >= nameCount || nameId < -1)
+                        throw new IllegalArgumentException("The load names an unknown product!");
+                    car.setCarLoad(new ProductLoad(nameId < 0 ? null : names[nameId], buffer.getDouble(at + 17),
+                            buffer.getDouble(at + 25), (flags & TrainFile.DANGEROUS) != 0));
+                }
+                cars.add(car);
+                at += TrainFile.CAR_RECORD_SIZE;
+            }
+        }
+
+        /**
+         * @param from
+         *      A byte of the chunk.
+         * @param to
+         *      The byte to stop at.
+         * @return
+         *      Returns the first byte from that point on that is not a space or tab, or to.
+         */
+        private int skipSpaces(int from, int to) {
+            while(from < to && (data[from] == ' ' || data[from] == '\t'))
+                from++;
+            return from;
+        }
+
+        /**
+         * @param b
+         *      A byte.
+         * @return
+         *      Returns true if a number can start with the byte.
+         */
+        private static boolean isNumberStart(byte b) {
+            return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.';
+        }
+    }
+
+    /**
+     * @param block
+     *      A block of bytes.
+     * @param b
+     *      The byte to find.
+     * @return
+     *      Returns the position of the last occurrence of the byte in the block, or -1.
+     */
+    private static int lastIndexOf(byte[] block, byte b) {
+        for(int i = block.length - 1; i >= 0; i--) {
+            if(block[i] == b)
+                return i;
+        }
+        return -1;
+    }
+}
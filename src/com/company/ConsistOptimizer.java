@@ -0,0 +1,258 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The ConsistOptimizer rearranges the cars of a TrainLinkedList to follow two placement rules: every dangerous car
+ * sits behind a number of buffer cars without dangerous loads counted from the head, and consecutive dangerous cars
+ * are separated by a number of buffer cars as well. Within those rules it puts heavy cars toward the head, or, if
+ * that is turned off, keeps the cars as close to their current order as the rules allow.
+ *
+ * A plan is made by sorting the dangerous and the other cars separately and then merging the two sequences from the
+ * head. At each position the merge takes whichever car should come first, unless a dangerous car is not allowed there
+ * yet, or taking another buffer car would leave too few buffer cars for the dangerous cars still to be placed. When the
+ * rules can be met at all this always meets them, and it takes O(n log n) time. The plan is applied by relinking the
+ * existing nodes in their new order, one O(1) splice per car, so a 10,000 car train is rearranged in milliseconds.
+ *
+ * @author Kirat Singh
+ */
+public class ConsistOptimizer {
+    /**
+     * Orders cars by their weight including the load, heaviest first.
+     */
+    private static final Comparator<TrainCar> HEAVIEST_FIRST = new Comparator<TrainCar>() {
+        @Override
+        public int compare(TrainCar a, TrainCar b) {
+            return Double.compare(totalWeight(b), totalWeight(a));
+        }
+    };
+
+    private int leadingBuffer;
+    private int spacing;
+    private boolean heavyFirst;
+
+    /**
+     * Creates an optimizer that keeps 5 buffer cars ahead of the first dangerous car and 1 between dangerous cars,
+     * and puts heavy cars toward the head.
+     */
+    public ConsistOptimizer() {
+        this(5, 1);
+    }
+
+    /**
+     * Creates an optimizer that puts heavy cars toward the head.
+     * @param leadingBuffer
+     *      The number of cars without dangerous loads that must come before the first dangerous car.
+     * @param spacing
+     *      The number of cars without dangerous loads that must come between two dangerous cars.
+     * @throws IllegalArgumentException
+     *      Thrown when either number is negative.
+     */
+    public ConsistOptimizer(int leadingBuffer, int spacing) throws IllegalArgumentException{
+        setLeadingBuffer(leadingBuffer);
+        setSpacing(spacing);
+        heavyFirst = true;
+    }
+
+    /**
+     * Works out the order the optimizer would put the cars of a train in, without changing the train.
+     * @param train
+     *      The train.
+     * @return
+     *      Every car of the train, in the planned order.
+     * @throws IllegalArgumentException
+     *      Thrown when the train has too few cars without dangerous loads to buffer its dangerous cars.
+     */
+    public List<TrainCar> plan(TrainLinkedList train) throws IllegalArgumentException{
+        int n = train.size();
+        TrainCar[] safe = new TrainCar[n];
+        int[] safePositions = new int[n];
+        TrainCar[] dangerous = new TrainCar[train.getNumDangerousCars()];
+        int[] dangerousPositions = new int[dangerous.length];
+        int safeCount = 0;
+        int dangerousCount = 0;
+        int position = 0;
+        for(TrainCar car : train) {
+            if(isDangerous(car)) {
+                dangerous[dangerousCount] = car;
+                dangerousPositions[dangerousCount++] = position++;
+            }else {
+                safe[safeCount] = car;
+                safePositions[safeCount++] = position++;
+            }
+        }
+        if(dangerousCount > 0 && safeCount < leadingBuffer + (long) spacing * (dangerousCount - 1))
+            throw new IllegalArgumentException("There are not enough cars without dangerous loads to buffer the "
+                    + "dangerous cars!");
+        if(heavyFirst) {
+            Arrays.sort(safe, 0, safeCount, HEAVIEST_FIRST);
+            Arrays.sort(dangerous, 0, dangerousCount, HEAVIEST_FIRST);
+        }
+
+        ArrayList<TrainCar> order = new ArrayList<TrainCar>(n);
+        int s = 0;
+        int d = 0;
+        int gap = 0;
+        int required = leadingBuffer;
+        while(s < safeCount || d < dangerousCount) {
+            int dangerousLeft = dangerousCount - d;
+            boolean dangerousAllowed = dangerousLeft > 0 && gap >= required;
+            boolean safeAllowed = s < safeCount
+                    && (dangerousLeft == 0 || safeCount - s - 1 >= buffersNeeded(gap + 1, required, dangerousLeft));
+            boolean takeDangerous;
+            if(!safeAllowed)
+                takeDangerous = true;
+            else if(!dangerousAllowed)
+                takeDangerous = false;
+            else if(heavyFirst)
+                takeDangerous = totalWeight(dangerous[d]) > totalWeight(safe[s]);
+            else
+                takeDangerous = dangerousPositions[d] < safePositions[s];
+            if(takeDangerous) {
+                order.add(dangerous[d++]);
+                gap = 0;
+                required = spacing;
+            }else {
+                order.add(safe[s++]);
+                gap++;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Rearranges the cars of a train as planned by plan. The cursor stays on the same car, and the totals of the train
+     * do not change.
+     * @param train
+     *      The train.
+     * @throws IllegalArgumentException
+     *      Thrown when the train has too few cars without dangerous loads to buffer its dangerous cars. The train is
+     *      not changed in that case.
+     */
+    public void optimize(TrainLinkedList train) throws IllegalArgumentException{
+        train.rearrange(plan(train));
+    }
+
+    /**
+     * Checks whether a train already follows the placement rules.
+     * @param train
+     *      The train.
+     * @return
+     *      True if every dangerous car has enough buffer cars ahead of it.
+     */
+    public boolean isSatisfied(TrainLinkedList train) {
+        int gap = 0;
+        int required = leadingBuffer;
+        for(TrainCar car : train) {
+            if(isDangerous(car)) {
+                if(gap < required)
+                    return false;
+                gap = 0;
+                required = spacing;
+            }else {
+                gap++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return
+     *      Returns the number of buffer cars that must come before the first dangerous car.
+     */
+    public int getLeadingBuffer() {
+        return leadingBuffer;
+    }
+
+    /**
+     * Sets the number of buffer cars that must come before the first dangerous car.
+     * @param newLeadingBuffer
+     *      The number of cars.
+     * @throws IllegalArgumentException
+     *      Thrown when the number is negative.
+     */
+    public void setLeadingBuffer(int newLeadingBuffer) throws IllegalArgumentException{
+        if(newLeadingBuffer < 0)
+            throw new IllegalArgumentException("The number of buffer cars cannot be negative!");
+        leadingBuffer = newLeadingBuffer;
+    }
+
+    /**
+     * @return
+     *      Returns the number of buffer cars that must come between two dangerous cars.
+     */
+    public int getSpacing() {
+        return spacing;
+    }
+
+    /**
+     * Sets the number of buffer cars that must come between two dangerous cars.
+     * @param newSpacing
+     *      The number of cars.
+     * @throws IllegalArgumentException
+     *      Thrown when the number is negative.
+     */
+    public void setSpacing(int newSpacing) throws IllegalArgumentException{
+        if(newSpacing < 0)
+            throw new IllegalArgumentException("The number of buffer cars cannot be negative!");
+        spacing = newSpacing;
+    }
+
+    /**
+     * @return
+     *      Returns true if heavy cars are put toward the head, false if the cars keep their current order where the
+     *      rules allow.
+     */
+    public boolean isHeavyFirst() {
+        return heavyFirst;
+    }
+
+    /**
+     * Sets whether heavy cars are put toward the head, or the cars keep their current order where the rules allow.
+     * @param newHeavyFirst
+     *      True to put heavy cars toward the head.
+     */
+    public void setHeavyFirst(boolean newHeavyFirst) {
+        heavyFirst = newHeavyFirst;
+    }
+
+    /**
+     * Counts the buffer cars still needed to place the remaining dangerous cars.
+     * @param gap
+     *      The number of buffer cars since the last dangerous car, or since the head.
+     * @param required
+     *      The number of buffer cars the next dangerous car needs ahead of it.
+     * @param dangerousLeft
+     *      The number of dangerous cars still to be placed, at least 1.
+     * @return
+     *      The number of buffer cars needed.
+     */
+    private long buffersNeeded(int gap, int required, int dangerousLeft) {
+        return Math.max(0, required - gap) + (long) spacing * (dangerousLeft - 1);
+    }
+
+    /**
+     * @param car
+     *      A car.
+     * @return
+     *      Returns true if the car holds a dangerous load.
+     */
+    private static boolean isDangerous(TrainCar car) {
+        return !car.isEmpty() && car.getCarLoad().isDangerous();
+    }
+
+    /**
+     * @param car
+     *      A car.
+     * @return
+     *      Returns the weight of the car plus the weight of its load.
+     */
+    private static double totalWeight(TrainCar car) {
+        if(car.isEmpty())
+            return car.getCarWeight();
+        return car.getCarWeight() + car.getCarLoad().getWeight();
+    }
+}
@@ -0,0 +1,76 @@
+package com.company;
+
+import java.io.PrintStream;
+
+/**
+ * The ConsoleTrainListener prints the events of a TrainLinkedList as the messages the TrainManager menu shows its
+ * users. Inserts are not printed, since the menu reports them itself with the values the user entered.
+ *
+ * @author Kirat Singh
+ */
+public class ConsoleTrainListener implements TrainListener {
+    private PrintStream out;
+
+    /**
+     * Creates a listener that prints to System.out.
+     */
+    public ConsoleTrainListener() {
+        this(System.out);
+    }
+
+    /**
+     * Creates a listener that prints to the given stream.
+     * @param stream
+     *      The stream the messages are printed to.
+     */
+    public ConsoleTrainListener(PrintStream stream) {
+        out = stream;
+    }
+
+    /**
+     * Prints the removed car as a table.
+     * @param car
+     *      The removed car.
+     */
+    @Override
+    public void carRemoved(TrainCar car) {
+        out.println("Car successfully unlinked, the following car was unlinked:");
+        out.println(new TrainCarNode(car).toString() + "\n");
+    }
+
+    /**
+     * Prints whether the cursor moved, or why it could not.
+     * @param car
+     *      The car the cursor references after the request, or null if the train is empty.
+     * @param forward
+     *      True if the cursor was asked to move toward the tail, false if toward the head.
+     * @param moved
+     *      True if the cursor moved.
+     */
+    @Override
+    public void cursorMoved(TrainCar car, boolean forward, boolean moved) {
+        if(car == null)
+            out.println("No cars are in the train!");
+        else if(moved && forward)
+            out.println("Cursor moved forward successfully!");
+        else if(moved)
+            out.println("Cursor moved backwards successfully!");
+        else if(forward)
+            out.println("The cursor is at the end of the list.");
+        else
+            out.println("The cursor is at the beginning of the list.");
+    }
+
+    /**
+     * Prints whether any dangerous cars were removed.
+     * @param count
+     *      The number of cars that were removed.
+     */
+    @Override
+    public void dangerousCarsRemoved(int count) {
+        if(count > 0)
+            out.println("Dangerous cars have been removed from the train");
+        else
+            out.println("The train has no dangerous cars in it!");
+    }
+}
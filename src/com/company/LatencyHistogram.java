@@ -0,0 +1,146 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LatencyHistogram counts how long calls to one operation took, in the log-linear buckets of an HDR histogram:
+ * each power of two is split into 16 buckets of equal width, so every recorded time is kept to within 1/16 of its
+ * value, from 1 nanosecond up to about a minute, in a fixed array of 528 counters. Recording a time is a few
+ * arithmetic operations and three counter updates, with no allocation.
+ *
+ * Times are recorded by the one thread changing the train at a time, and may be read from any thread. The recording
+ * thread updates the counters with lazySet instead of compare-and-set, which is all a single writer needs, so a reader
+ * may see a time in the counts a moment before it shows up in the total.
+ *
+ * @author Kirat Singh
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * Creates an empty histogram.
+     */
+    LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        total = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records one call.
+     * @param nanos
+     *      How long the call took, in nanoseconds.
+     */
+    void record(long nanos) {
+        if(nanos < 0)
+            nanos = 0;
+        int i = bucket(nanos);
+        counts.lazySet(i, counts.get(i) + 1);
+        count.lazySet(count.get() + 1);
+        total.lazySet(total.get() + nanos);
+        if(nanos > max.get())
+            max.lazySet(nanos);
+    }
+
+    /**
+     * @return
+     *      Returns the number of calls recorded.
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return
+     *      Returns the summed time of every call recorded, in nanoseconds.
+     */
+    long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return
+     *      Returns the longest time recorded, in nanoseconds.
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Finds the time that a share of the recorded calls took no longer than.
+     * @param quantile
+     *      The share of calls, from 0 to 1.
+     * @return
+     *      The highest time in the bucket holding that call, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    long valueAt(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long recorded = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            recorded += snapshot[i];
+        }
+        if(recorded == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(quantile * recorded));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if(seen >= target)
+                return Math.min(highestInBucket(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Forgets every recorded call. Calls recorded while the histogram is being reset may be partly kept.
+     */
+    void reset() {
+        for(int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @param nanos
+     *      A time, in nanoseconds, that is not negative.
+     * @return
+     *      Returns the bucket the time is counted in.
+     */
+    private static int bucket(long nanos) {
+        if(nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if(exponent > MAX_EXPONENT)
+            return BUCKETS - 1;
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param bucket
+     *      A bucket.
+     * @return
+     *      Returns the highest time, in nanoseconds, counted in the bucket.
+     */
+    private static long highestInBucket(int bucket) {
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,133 @@
+package com.company;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The LatencySummary is a fixed record of how long the calls to one operation of a train took: how many calls there
+ * were, their mean, a few percentiles and the longest. It is what the TrainMetrics hand out, and JMX clients see it as
+ * a composite value with one item per getter.
+ *
+ * @author Kirat Singh
+ */
+public class LatencySummary {
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    /**
+     * Creates a summary.
+     * @param count
+     *      The number of calls.
+     * @param meanNanos
+     *      The mean time of a call, in nanoseconds.
+     * @param p50Nanos
+     *      The median time of a call, in nanoseconds.
+     * @param p90Nanos
+     *      The time 90% of the calls took no longer than, in nanoseconds.
+     * @param p99Nanos
+     *      The time 99% of the calls took no longer than, in nanoseconds.
+     * @param p999Nanos
+     *      The time 99.9% of the calls took no longer than, in nanoseconds.
+     * @param maxNanos
+     *      The longest time of a call, in nanoseconds.
+     */
+    @ConstructorProperties({"count", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos", "maxNanos"})
+    public LatencySummary(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos,
+                          long maxNanos) {
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Summarizes a histogram.
+     * @param histogram
+     *      The histogram, or null if nothing has been recorded.
+     * @return
+     *      The summary.
+     */
+    static LatencySummary of(LatencyHistogram histogram) {
+        if(histogram == null)
+            return new LatencySummary(0, 0, 0, 0, 0, 0, 0);
+        long count = histogram.getCount();
+        double mean = count == 0 ? 0 : (double) histogram.getTotal() / count;
+        return new LatencySummary(count, mean, histogram.valueAt(0.5), histogram.valueAt(0.9),
+                histogram.valueAt(0.99), histogram.valueAt(0.999), histogram.getMax());
+    }
+
+    /**
+     * @return
+     *      Returns the number of calls.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return
+     *      Returns the mean time of a call, in nanoseconds.
+     */
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    /**
+     * @return
+     *      Returns the median time of a call, in nanoseconds.
+     */
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    /**
+     * @return
+     *      Returns the time 90% of the calls took no longer than, in nanoseconds.
+     */
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    /**
+     * @return
+     *      Returns the time 99% of the calls took no longer than, in nanoseconds.
+     */
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    /**
+     * @return
+     *      Returns the time 99.9% of the calls took no longer than, in nanoseconds.
+     */
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    /**
+     * @return
+     *      Returns the longest time of a call, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Returns the summary on one line.
+     * @return
+     *      A string with the number of calls, the mean, the percentiles and the longest time, in microseconds.
+     */
+    public String toString() {
+        return count + " calls, mean " + String.format("%.2f", meanNanos / 1000) + " us, p50 "
+                + String.format("%.2f", p50Nanos / 1000.0) + " us, p99 " + String.format("%.2f", p99Nanos / 1000.0)
+                + " us, p99.9 " + String.format("%.2f", p999Nanos / 1000.0) + " us, max "
+                + String.format("%.2f", maxNanos / 1000.0) + " us";
+    }
+}
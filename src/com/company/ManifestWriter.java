@@ -0,0 +1,301 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The ManifestWriter streams the manifest of a TrainLinkedList, one row per car, to a Writer, an OutputStream or any
+ * other Appendable. Rows are laid out in the same fixed-width columns as the console manifest, but the numbers are
+ * formatted by hand into a single reusable character buffer instead of through String.format, so writing a row
+ * creates no garbage. The buffer is handed to the destination whenever it fills up and when the writer is flushed.
+ * The single product record printed by findProduct is laid out here too, so every kind of train prints it the same way.
+ *
+ * @author Kirat Singh
+ */
+public class ManifestWriter {
+    static final String HEADER = "Num   Length (m)    Weight (t)  |    Name      Weight (t)     Value ($)   Dangerous\n"
+            + "-----------------------------------------------------------------------------------\n";
+    private static final String CURSOR = "<- [Cursor]";
+    private static final int BUFFER_SIZE = 8192;
+
+    private Writer writer;
+    private Appendable appendable;
+    private char[] buffer;
+    private int pos;
+    private char[] digits;
+
+    /**
+     * Creates a ManifestWriter that writes to any Appendable, such as a Writer, a StringBuilder or a PrintStream.
+     * Writers are handed the buffer directly, without copying it.
+     * @param out
+     *      The destination of the manifest.
+     */
+    public ManifestWriter(Appendable out) {
+        if(out instanceof Writer)
+            writer = (Writer) out;
+        else
+            appendable = out;
+        buffer = new char[BUFFER_SIZE];
+        digits = new char[20];
+    }
+
+    /**
+     * Creates a ManifestWriter that writes to an OutputStream in the platform's default charset.
+     * @param out
+     *      The destination of the manifest.
+     * @return
+     *      The new ManifestWriter.
+     */
+    public static ManifestWriter forStream(OutputStream out) {
+        return new ManifestWriter(new OutputStreamWriter(out, Charset.defaultCharset()));
+    }
+
+    /**
+     * Prints the single ProductLoad record that findProduct reports: the name of a product with the summed weight and
+     * value of its loads, and whether it is dangerous.
+     * @param out
+     *      The stream the record is printed to.
+     * @param name
+     *      The name of the product, as it was searched for.
+     * @param total
+     *      The combined weight and value of every load of the product.
+     */
+    public static void printProduct(PrintStream out, String name, ProductLoad total) {
+        out.println("The following products were found: ");
+        out.print("Name      Weight (t)     Value ($)   Dangerous\n");
+        out.print("----------------------------------------------\n");
+        out.println(String.format("%-10s%-15.1f%-12.2f%-16s", name, total.getWeight(), total.getValue(),
+                total.isDangerous() ? "YES" : "NO"));
+    }
+
+    /**
+     * Writes the column headings of the manifest.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeHeader() throws IOException {
+        appendText(HEADER);
+    }
+
+    /**
+     * Writes one row of the manifest.
+     * @param num
+     *      The number of the car, starting from 1 at the head of the train.
+     * @param car
+     *      The car being described.
+     * @param atCursor
+     *      True if the cursor references the car.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeRow(int num, TrainCar car, boolean atCursor) throws IOException {
+        if(car.isEmpty()) {
+            writeRow(num, car.getCarLength(), car.getCarWeight(), null, 0, 0, false, atCursor);
+        }else {
+            ProductLoad load = car.getCarLoad();
+            writeRow(num, car.getCarLength(), car.getCarWeight(), load.getName(), load.getWeight(), load.getValue(),
+                    load.isDangerous(), atCursor);
+        }
+    }
+
+    /**
+     * Writes one row of the manifest from the separate values of a car and its load.
+     * @param num
+     *      The number of the car, starting from 1 at the head of the train.
+     * @param carLength
+     *      The length of the car.
+     * @param carWeight
+     *      The weight of the car.
+     * @param loadName
+     *      The name of the load, or null if the car is empty.
+     * @param loadWeight
+     *      The weight of the load.
+     * @param loadValue
+     *      The value of the load.
+     * @param dangerous
+     *      Whether the load is dangerous.
+     * @param atCursor
+     *      True if the cursor references the car.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeRow(int num, double carLength, double carWeight, String loadName, double loadWeight,
+                         double loadValue, boolean dangerous, boolean atCursor) throws IOException {
+        appendLong(num, 6);
+        appendFixed(carLength, 1, 14);
+        appendFixed(carWeight, 1, 17);
+        appendPadded(loadName == null ? "EMPTY" : loadName, 10);
+        appendFixed(loadWeight, 1, 15);
+        appendFixed(loadValue, 2, 12);
+        appendPadded(dangerous ? "YES" : "NO", 16);
+        appendPadded(atCursor ? CURSOR : "", 6);
+        appendChar('\n');
+    }
+
+    /**
+     * Hands everything written so far to the destination, and flushes the destination if it is a Writer.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void flush() throws IOException {
+        drain();
+        if(writer != null)
+            writer.flush();
+    }
+
+    /**
+     * Hands the buffered characters to the destination and empties the buffer.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    private void drain() throws IOException {
+        if(pos == 0)
+            return;
+        if(writer != null)
+            writer.write(buffer, 0, pos);
+        else
+            appendable.append(CharBuffer.wrap(buffer, 0, pos));
+        pos = 0;
+    }
+
+    /**
+     * Makes sure the buffer has room for some more characters.
+     * @param n
+     *      The number of characters about to be written, which must not exceed the buffer size.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    private void ensure(int n) throws IOException {
+        if(pos + n > buffer.length)
+            drain();
+    }
+
+    private void appendChar(char c) throws IOException {
+        ensure(1);
+        buffer[pos++] = c;
+    }
+
+    /**
+     * Writes text of any length through the buffer.
+     * @param s
+     *      The text.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    private void appendText(String s) throws IOException {
+        int start = 0;
+        while(start < s.length()) {
+            if(pos == buffer.length)
+                drain();
+            int n = Math.min(s.length() - start, buffer.length - pos);
+            s.getChars(start, start + n, buffer, pos);
+            pos += n;
+            start += n;
+        }
+    }
+
+    /**
+     * Writes text left aligned in a column, like the %-Ns conversion of String.format.
+     * @param s
+     *      The text, which is written in full even if it is wider than the column.
+     * @param width
+     *      The width of the column.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    private void appendPadded(String s, int width) throws IOException {
+        appendText(s);
+        appendSpaces(width - s.length());
+    }
+
+    private void appendSpaces(int n) throws IOException {
+        for(int i = 0; i < n; i++)
+            appendChar(' ');
+    }
+
+    /**
+     * Writes a whole number left aligned in a column, like the %-Nd conversion of String.format.
+     * @param v
+     *      The number.
+     * @param width
+     *      The width of the column.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    private void appendLong(long v, int width) throws IOException {
+        if(v == Long.MIN_VALUE) {
+            appendPadded(Long.toString(v), width);
+            return;
+        }
+        ensure(digits.length);
+        int start = pos;
+        if(v < 0) {
+            buffer[pos++] = '-';
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (char) ('0' + v % 10);
+            v /= 10;
+        }while(v != 0);
+        while(n > 0)
+            buffer[pos++] = digits[--n];
+        appendSpaces(width - (pos - start));
+    }
+
+    /**
+     * Writes a decimal number rounded to a fixed number of places, left aligned in a column, like the %-N.Df conversion
+     * of String.format. String.format rounds the shortest decimal form of the double half up, so a number is rounded
+     * up exactly when it is at or above the double nearest to the halfway point between two candidates. The sign is
+     * taken from the sign bit, so negative zero and negative numbers that round to zero keep their minus sign, as they
+     * do with String.format. Numbers too large to scale exactly fall back to String.format.
+     * @param v
+     *      The number.
+     * @param decimals
+     *      The number of digits after the decimal point, from 1 to 9.
+     * @param width
+     *      The width of the column.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    private void appendFixed(double v, int decimals, int width) throws IOException {
+        long scale = 1;
+        for(int i = 0; i < decimals; i++)
+            scale *= 10;
+        double magnitude = Math.abs(v);
+        if(Double.isNaN(v) || magnitude * scale >= 1e14) {
+            appendPadded(String.format("%." + decimals + "f", v), width);
+            return;
+        }
+        long scaled = (long) Math.floor(magnitude * scale);
+        double halfScale = 10.0 * scale;
+        if(magnitude >= (10 * scaled + 5) / halfScale)
+            scaled++;
+        else if(scaled > 0 && magnitude < (10 * scaled - 5) / halfScale)
+            scaled--;
+        ensure(digits.length + decimals + 2);
+        int start = pos;
+        if(Double.doubleToRawLongBits(v) < 0)
+            buffer[pos++] = '-';
+        long whole = scaled / scale;
+        long fraction = scaled % scale;
+        int n = 0;
+        do {
+            digits[n++] = (char) ('0' + whole % 10);
+            whole /= 10;
+        }while(whole != 0);
+        while(n > 0)
+            buffer[pos++] = digits[--n];
+        buffer[pos++] = '.';
+        for(long place = scale / 10; place > 0; place /= 10) {
+            buffer[pos++] = (char) ('0' + fraction / place);
+            fraction %= place;
+        }
+        appendSpaces(width - (pos - start));
+    }
+}
@@ -0,0 +1,181 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ProductCatalog gives every product a small integer id, shared by every train in the program. Names that differ
+ * only in case are the same product and get the same id, so product indexes can be plain arrays indexed by id, and
+ * comparing two products is comparing two ints. The catalog also interns the spellings of product names, so the many
+ * loads of one product share a single String.
+ *
+ * A name is case folded only the first time its spelling is seen; after that its id is found with a single hash
+ * lookup. Ids are never reused, so the catalog is bounded instead: it remembers at most MAX_SPELLINGS spellings, and
+ * later spellings are case folded on every lookup and not interned, and it holds at most MAX_PRODUCTS products, after
+ * which a load of a new product is refused. Names read from imported consists therefore cannot grow it without
+ * limit. The catalog may be used from any thread.
+ *
+ * @author Kirat Singh
+ */
+public final class ProductCatalog {
+    /**
+     * The most products the catalog holds.
+     */
+    public static final int MAX_PRODUCTS = 1 << 16;
+    /**
+     * The most spellings of product names the catalog remembers and interns.
+     */
+    public static final int MAX_SPELLINGS = 1 << 12;
+
+    private static final ConcurrentHashMap<String, Spelling> SPELLINGS = new ConcurrentHashMap<String, Spelling>();
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static final Object LOCK = new Object();
+    private static volatile String[] names = new String[16];
+    private static volatile int size;
+
+    /**
+     * A spelling of a product name, with its interned String and the id of its product.
+     */
+    private static class Spelling {
+        private final String name;
+        private final int id;
+
+        private Spelling(String spellingName, int productId) {
+            name = spellingName;
+            id = productId;
+        }
+    }
+
+    private ProductCatalog() {
+    }
+
+    /**
+     * @param name
+     *      A product name, or null.
+     * @return
+     *      Returns the shared String for that spelling of the name, or the name itself once the catalog remembers
+     *      MAX_SPELLINGS other spellings, or null for null.
+     * @throws IllegalArgumentException
+     *      Thrown when the name is of a new product and the catalog already holds MAX_PRODUCTS products.
+     */
+    public static String intern(String name) throws IllegalArgumentException{
+        if(name == null)
+            return null;
+        Spelling spelling = spelling(name);
+        return spelling == null ? name : spelling.name;
+    }
+
+    /**
+     * Finds the id of a product, adding the product to the catalog if it is new. The null name is the same product as
+     * the empty name.
+     * @param name
+     *      The product name, in any case.
+     * @return
+     *      The id of the product.
+     * @throws IllegalArgumentException
+     *      Thrown when the product is new and the catalog already holds MAX_PRODUCTS products.
+     */
+    public static int idOf(String name) throws IllegalArgumentException{
+        if(name == null)
+            name = "";
+        Spelling spelling = spelling(name);
+        return spelling == null ? productId(fold(name)) : spelling.id;
+    }
+
+    /**
+     * Finds the id of a product without adding it to the catalog.
+     * @param name
+     *      The product name, in any case.
+     * @return
+     *      The id of the product, or -1 if no load of that product has ever been made.
+     */
+    public static int find(String name) {
+        if(name == null)
+            name = "";
+        Spelling spelling = SPELLINGS.get(name);
+        if(spelling != null)
+            return spelling.id;
+        Integer id = IDS.get(fold(name));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id
+     *      The id of a product.
+     * @return
+     *      Returns the lower case name of the product.
+     * @throws IllegalArgumentException
+     *      Thrown when no product has that id.
+     */
+    public static String nameOf(int id) throws IllegalArgumentException{
+        if(id < 0 || id >= size)
+            throw new IllegalArgumentException("There is no product with id " + id + "!");
+        return names[id];
+    }
+
+    /**
+     * @return
+     *      Returns the number of products in the catalog. Every id is less than this.
+     */
+    public static int size() {
+        return size;
+    }
+
+    /**
+     * Finds the record of a spelling, adding it, and its product if that is new, the first time it is seen.
+     * @param name
+     *      The spelling.
+     * @return
+     *      The record of the spelling, or null if it is new and the catalog already remembers MAX_SPELLINGS spellings.
+     * @throws IllegalArgumentException
+     *      Thrown when the spelling is of a new product and the catalog already holds MAX_PRODUCTS products.
+     */
+    private static Spelling spelling(String name) throws IllegalArgumentException{
+        Spelling spelling = SPELLINGS.get(name);
+        if(spelling == null && SPELLINGS.size() < MAX_SPELLINGS)
+            spelling = SPELLINGS.computeIfAbsent(name, n -> new Spelling(n, productId(fold(n))));
+        return spelling;
+    }
+
+    /**
+     * Finds the id of a case folded product name, giving it the next id if it is new.
+     * @param key
+     *      The case folded name.
+     * @return
+     *      The id of the product.
+     * @throws IllegalArgumentException
+     *      Thrown when the product is new and the catalog already holds MAX_PRODUCTS products.
+     */
+    private static int productId(String key) throws IllegalArgumentException{
+        Integer id = IDS.get(key);
+        if(id != null)
+            return id;
+        synchronized(LOCK) {
+            id = IDS.get(key);
+            if(id != null)
+                return id;
+            int next = size;
+            if(next == MAX_PRODUCTS)
+                throw new IllegalArgumentException("The product catalog is full!");
+            String[] current = names;
+            if(next == current.length)
+                current = Arrays.copyOf(current, next * 2);
+            current[next] = key;
+            names = current;
+            size = next + 1;
+            IDS.put(key, next);
+            return next;
+        }
+    }
+
+    /**
+     * @param name
+     *      A product name.
+     * @return
+     *      Returns the name in lower case.
+     */
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,16 +2,22 @@ package com.company;
 
 /**
  * The ProductLoad class holds various information about the product held on the TrainCar. Loads can have a value,
- * weight, name, and can be designated as dangerous or not.
+ * weight, name, and can be designated as dangerous or not. A load can be on at most one TrainCar at a time, and
+ * tells that car whenever one of its fields changes, so the totals of the train the car is on stay exact. The name
+ * of a load is interned through the ProductCatalog, which also gives the load the integer id of its product.
  *
  * @author Kirat Singh
  */
 public class ProductLoad {
     private String name;
+    private int productId;
     private double weight;
     private double value;
     private boolean isDangerous;
 
+    // The car holding this load, or null.
+    TrainCar car;
+
     /**
      * Constructs the ProductLoad object and assigns the various fields to the parameters that were passed in.
      * @param prodName
@@ -22,9 +28,13 @@ public class ProductLoad {
      *      The value of the load as a double.
      * @param dangerous
      *      A boolean representing whether or not the load contains a dangerous item.
+     * @throws IllegalArgumentException
+     *      Thrown if the weight or value is invalid, or the name is of a new product and the ProductCatalog is full.
      */
-    public ProductLoad(String prodName, double prodWeight, double prodValue, boolean dangerous){
-        name = prodName;
+    public ProductLoad(String prodName, double prodWeight, double prodValue, boolean dangerous)
+            throws IllegalArgumentException{
+        name = ProductCatalog.intern(prodName);
+        productId = ProductCatalog.idOf(prodName);
         setWeight(prodWeight);
         setValue(prodValue);
         isDangerous = dangerous;
@@ -62,22 +72,39 @@ public class ProductLoad {
         return name;
     }
 
+    /**
+     * @return
+     *      Returns the ProductCatalog id of the load's product, which is the same for names differing only in case.
+     */
+    public int getProductId() {
+        return productId;
+    }
+
     /**
      * Sets whether or not the load is dangerous.
      * @param dangerous
      *      Boolean that represents if the load is dangerous.
      */
     public void setDangerous(boolean dangerous) {
+        beforeChange();
         isDangerous = dangerous;
+        afterChange();
     }
 
     /**
      * Sets the name of the load.
      * @param pName
      *      The new name.
+     * @throws IllegalArgumentException
+     *      Thrown if the name is of a new product and the ProductCatalog is full.
      */
-    public void setName(String pName) {
-        name = pName;
+    public void setName(String pName) throws IllegalArgumentException{
+        String interned = ProductCatalog.intern(pName);
+        int id = ProductCatalog.idOf(pName);
+        beforeChange();
+        name = interned;
+        productId = id;
+        afterChange();
     }
 
     /**
@@ -88,9 +115,11 @@ public class ProductLoad {
      *      Thrown if the new value is < 0, which represents an invalid argument.
      */
     public void setValue(double pValue) throws IllegalArgumentException{
-        if(pValue >= 0)
-        value = pValue;
-        else throw new IllegalArgumentException("The value must be greater than or equal to 0!");
+        if(pValue >= 0) {
+            beforeChange();
+            value = pValue;
+            afterChange();
+        }else throw new IllegalArgumentException("The value must be greater than or equal to 0!");
     }
 
     /**
@@ -101,8 +130,26 @@ public class ProductLoad {
      *      Thrown when the weight is <= 0, representing an invalid argument for the method.
      */
     public void setWeight(double pWeight) throws IllegalArgumentException {
-        if(pWeight > 0)
-        weight = pWeight;
-        else throw new IllegalArgumentException("The weight must be greater than 0!");
+        if(pWeight > 0) {
+            beforeChange();
+            weight = pWeight;
+            afterChange();
+        }else throw new IllegalArgumentException("The weight must be greater than 0!");
+    }
+
+    /**
+     * Tells the car holding this load, if any, that a field is about to change.
+     */
+    private void beforeChange() {
+        if(car != null)
+            car.loadChanging();
+    }
+
+    /**
+     * Tells the car holding this load, if any, that a field has changed.
+     */
+    private void afterChange() {
+        if(car != null)
+            car.loadChanged();
     }
 }
@@ -0,0 +1,116 @@
+package com.company;
+
+/**
+ * The ProductTotal class is the running record kept by the TrainLinkedList for a single product name. It sums the
+ * weight and value of every load on the train carrying that product and counts how many of those loads are
+ * dangerous, so that product searches never have to walk the train.
+ *
+ * @author Kirat Singh
+ */
+class ProductTotal {
+    private int count;
+    private double weight;
+    private double value;
+    private int numDangerous;
+
+    /**
+     * Adds a load to this product's totals.
+     * @param load
+     *      The load being placed on the train.
+     */
+    void add(ProductLoad load) {
+        add(load.getWeight(), load.getValue(), load.isDangerous());
+    }
+
+    /**
+     * Adds a load to this product's totals.
+     * @param loadWeight
+     *      The weight of the load.
+     * @param loadValue
+     *      The value of the load.
+     * @param dangerous
+     *      Whether the load is dangerous.
+     */
+    void add(double loadWeight, double loadValue, boolean dangerous) {
+        count++;
+        weight += loadWeight;
+        value += loadValue;
+        if(dangerous)
+            numDangerous++;
+    }
+
+    /**
+     * Adds every load counted by another record of the same product to this product's totals.
+     * @param other
+     *      The other record.
+     */
+    void add(ProductTotal other) {
+        count += other.count;
+        weight += other.weight;
+        value += other.value;
+        numDangerous += other.numDangerous;
+    }
+
+    /**
+     * Removes a load from this product's totals.
+     * @param load
+     *      The load being taken off the train.
+     */
+    void remove(ProductLoad load) {
+        remove(load.getWeight(), load.getValue(), load.isDangerous());
+    }
+
+    /**
+     * Removes a load from this product's totals.
+     * @param loadWeight
+     *      The weight of the load.
+     * @param loadValue
+     *      The value of the load.
+     * @param dangerous
+     *      Whether the load is dangerous.
+     */
+    void remove(double loadWeight, double loadValue, boolean dangerous) {
+        count--;
+        weight -= loadWeight;
+        value -= loadValue;
+        if(dangerous)
+            numDangerous--;
+        if(count == 0) {
+            // Drop the rounding left over from the sums, so a record kept for reuse starts again from exactly 0.
+            weight = 0;
+            value = 0;
+        }
+    }
+
+    /**
+     * @return
+     *      Returns the number of loads of this product on the train.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return
+     *      Returns the summed weight of every load of this product.
+     */
+    double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return
+     *      Returns the summed value of every load of this product.
+     */
+    double getValue() {
+        return value;
+    }
+
+    /**
+     * @return
+     *      Returns true if at least one load of this product is dangerous.
+     */
+    boolean isDangerous() {
+        return numDangerous > 0;
+    }
+}
@@ -3,7 +3,8 @@ package com.company;
 /**
  * The TrainCar class holds the information about the TrainCar. Each TrainCar has an associated length and weight
  * assigned to it. TrainCar's also have a ProductLoad that maybe null, or could be set using the setCarLoad()
- * method.
+ * method. While a car is on a TrainLinkedList or a ConcurrentTrainLinkedList it knows the node holding it, through
+ * which it finds its train, so that changes to its load are passed on to the train's totals as they happen.
  *
  * @author Kirat Singh
  */
@@ -12,6 +13,11 @@ public class TrainCar {
     private double carWeight;
     private ProductLoad carLoad;
 
+    // The node holding this car, or null while the car is not on a TrainLinkedList.
+    TrainCarNode node;
+    // The node holding this car, or null while the car is not on a ConcurrentTrainLinkedList.
+    volatile ConcurrentTrainLinkedList.Node sharedNode;
+
     /**
      * Creates the TrainCar object and assigns the length and weight of the Car. The load is null.
      * @param length
@@ -50,12 +56,56 @@ public class TrainCar {
     }
 
     /**
-     * Sets the TrainCar's ProductLoad.
+     * Sets the TrainCar's ProductLoad. If the car is on a train, the train's totals are updated to match.
+     * @param load
+     *      The new ProductLoad, or null to empty the car.
+     * @throws IllegalArgumentException
+     *      Thrown when the load is already on another car.
+     */
+    public void setCarLoad(ProductLoad load) throws IllegalArgumentException{
+        if(load == carLoad)
+            return;
+        if(load != null && load.car != null)
+            throw new IllegalArgumentException("That load is already on a car!");
+        if(node != null) {
+            TrainIndex.ownerOf(node).replaceLoad(node, load);
+        }else {
+            putLoad(load);
+            loadChanged();
+        }
+    }
+
+    /**
+     * Sets the TrainCar's ProductLoad without telling the train, moving the load's back reference from the old load
+     * to the new one.
      * @param load
-     *      The new ProductLoad.
+     *      The new ProductLoad, or null.
      */
-    public void setCarLoad(ProductLoad load) {
+    void putLoad(ProductLoad load) {
+        if(carLoad != null)
+            carLoad.car = null;
         carLoad = load;
+        if(load != null)
+            load.car = this;
+    }
+
+    /**
+     * Called by the car's load just before one of its fields changes.
+     */
+    void loadChanging() {
+        if(node != null)
+            TrainIndex.ownerOf(node).loadChanging(node);
+    }
+
+    /**
+     * Called by the car's load just after one of its fields has changed.
+     */
+    void loadChanged() {
+        ConcurrentTrainLinkedList.Node shared = sharedNode;
+        if(node != null)
+            TrainIndex.ownerOf(node).loadChanged(node);
+        else if(shared != null)
+            ConcurrentTrainLinkedList.loadChanged(shared);
     }
 
     /**
@@ -10,6 +10,19 @@ public class TrainCarNode {
     private TrainCarNode next;
     private TrainCar car;
 
+    // Links and bookkeeping for the TrainIndex, the position tree the TrainLinkedList keeps over its nodes.
+    TrainCarNode parent;
+    TrainCarNode left;
+    TrainCarNode right;
+    int priority;
+    int count;
+    double sumLength;
+    double sumWeight;
+    double sumValue;
+    int dangerCount;
+    // The train whose TrainIndex this node is the root of. Only meaningful while the node is a root.
+    TrainLinkedList owner;
+
     /**
      * Constructs the TrainCarNode with its own TrainCar.
      * @param currentCar
@@ -0,0 +1,527 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The TrainFile class stores a train on disk in a compact binary form that is read through a memory map. Opening a
+ * file only reads its header; the file is mapped into memory the first time a car is asked for, and the cars are read
+ * straight out of the map, so even a very large train opens at once.
+ *
+ * The file starts with a magic number and version, followed by two header slots. After the header come the car
+ * records, one fixed-size record per car in train order, so car i is always at DATA_START + i * CAR_RECORD_SIZE and
+ * is read in O(1) time. A car record holds the car's length and weight, its load's weight and value, a
+ * loaded/dangerous flag byte and the number of its load's name. The load names are kept in a separate name table
+ * after the cars, numbered in the order they were first used, which is read once when the first car is.
+ *
+ * New cars are written after the committed cars and a new name table is written where it overlaps neither the cars
+ * nor the committed table. If new cars would reach the committed table first, the table is moved further along and
+ * committed before they are written, so nothing a commit points to is ever overwritten. A commit forces the new
+ * records to disk and then writes the car count, name table position and cursor position into whichever header slot
+ * is older, with a sequence number and checksum. Opening a file uses the newest slot whose checksum is valid. A crash
+ * at any point therefore leaves the file as it was after some commit.
+ *
+ * @author Kirat Singh
+ */
+public class TrainFile implements Closeable {
+    private static final int MAGIC = 0x54524E46;
+    private static final int VERSION = 2;
+    private static final int SLOT_SIZE = 48;
+    private static final int DATA_START = 8 + 2 * SLOT_SIZE;
+    // The type byte of a name record in the binary consists read by the ConsistImporter, which interleave name records
+    // with car records laid out as in a TrainFile.
+    static final byte NAME_RECORD = 1;
+    static final byte CAR_RECORD = 2;
+    static final int CAR_RECORD_SIZE = 1 + 4 * 8 + 1 + 4;
+    static final byte LOADED = 1;
+    static final byte DANGEROUS = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private FileChannel channel;
+    private long sequence;
+    private int carCount;
+    private int cursorIndex;
+    private int nameCount;
+    private long namesStart;
+    private long namesEnd;
+
+    private MappedByteBuffer map;
+    private ArrayList<String> names;
+    private HashMap<String, Integer> nameIds;
+
+    private ByteBuffer pending;
+    private int flushedCars;
+    private int pendingCars;
+
+    /**
+     * Creates a TrainFile over an open channel whose header has already been read or written.
+     * @param fileChannel
+     *      The channel of the file.
+     */
+    private TrainFile(FileChannel fileChannel) {
+        channel = fileChannel;
+        pending = ByteBuffer.allocate(CAR_RECORD_SIZE * 1724);
+    }
+
+    /**
+     * Creates a new, empty train file, replacing any file already at the path.
+     * @param path
+     *      The location of the file.
+     * @return
+     *      The open TrainFile.
+     * @throws IOException
+     *      Thrown when the file cannot be created.
+     */
+    public static TrainFile create(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TrainFile file = new TrainFile(channel);
+        try {
+            ByteBuffer start = ByteBuffer.allocate(8);
+            start.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, start, 0);
+            file.namesStart = DATA_START;
+            file.namesEnd = DATA_START;
+            file.cursorIndex = -1;
+            file.names = new ArrayList<String>();
+            file.nameIds = new HashMap<String, Integer>();
+            file.writeSlot();
+            file.writeSlot();
+            channel.force(true);
+        }catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Opens an existing train file, reading only its header.
+     * @param path
+     *      The location of the file.
+     * @return
+     *      The open TrainFile.
+     * @throws IOException
+     *      Thrown when the file cannot be read or is not a train file.
+     */
+    public static TrainFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TrainFile file = new TrainFile(channel);
+        try {
+            file.readHeader();
+        }catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Writes a whole train to a new file at the path, replacing any file already there.
+     * @param train
+     *      The train to save.
+     * @param path
+     *      The location of the file.
+     * @throws IOException
+     *      Thrown when the file cannot be written.
+     */
+    public static void save(TrainLinkedList train, Path path) throws IOException {
+        TrainFile file = create(path);
+        try {
+            for(TrainCar car : train)
+                file.append(car);
+            file.setCursorIndex(train.getCursorIndex());
+            file.commit();
+        }finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @return
+     *      Returns the number of committed cars in the file.
+     */
+    public int size() {
+        return carCount;
+    }
+
+    /**
+     * @return
+     *      Returns the committed cursor position, with 0 being the head of the train, or -1 if the train is empty.
+     */
+    public int getCursorIndex() {
+        return cursorIndex;
+    }
+
+    /**
+     * Sets the cursor position stored by the next commit.
+     * @param position
+     *      The position of the cursor, or -1 for an empty train.
+     */
+    public void setCursorIndex(int position) {
+        cursorIndex = position;
+    }
+
+    /**
+     * Reads a committed car from the memory map, straight from its fixed place in the file. The first call maps the
+     * file and reads the name table.
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      A new TrainCar built from the record.
+     * @throws IOException
+     *      Thrown when the file cannot be read or is damaged.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public TrainCar getCar(int position) throws IOException, IllegalArgumentException {
+        if(position < 0 || position >= carCount)
+            throw new IllegalArgumentException("There is no car at position " + position + "!");
+        mapFile();
+        return readCar(carOffset(position));
+    }
+
+    /**
+     * Builds a TrainLinkedList holding every committed car, with the cursor at the committed position. The cars are
+     * read from the memory map and inserted as one block.
+     * @return
+     *      The new TrainLinkedList.
+     * @throws IOException
+     *      Thrown when the file cannot be read or is damaged.
+     */
+    public TrainLinkedList load() throws IOException {
+        mapFile();
+        ArrayList<TrainCar> cars = new ArrayList<TrainCar>(carCount);
+        for(int i = 0; i < carCount; i++)
+            cars.add(readCar(carOffset(i)));
+        TrainLinkedList train = new TrainLinkedList();
+        train.insertAllAfterCursor(cars);
+        if(cursorIndex >= 0 && cursorIndex < carCount)
+            train.seek(cursorIndex);
+        return train;
+    }
+
+    /**
+     * Appends a car to the end of the train in the file. The car is not part of the train until the next commit.
+     * @param car
+     *      The car to append.
+     * @throws IOException
+     *      Thrown when the file cannot be read or written.
+     * @throws IllegalArgumentException
+     *      Thrown when the car is null or its load's name is longer than 65535 bytes.
+     */
+    public void append(TrainCar car) throws IOException, IllegalArgumentException {
+        if(car == null)
+            throw new IllegalArgumentException("That car has not been created!");
+        readNames();
+        int nameId = -1;
+        byte flags = 0;
+        double loadWeight = 0;
+        double loadValue = 0;
+        if(!car.isEmpty()) {
+            ProductLoad load = car.getCarLoad();
+            flags = load.isDangerous() ? LOADED | DANGEROUS : LOADED;
+            loadWeight = load.getWeight();
+            loadValue = load.getValue();
+            if(load.getName() != null)
+                nameId = nameId(load.getName());
+        }
+        if(carOffset(carCount + flushedCars + pendingCars + 1) > Integer.MAX_VALUE)
+            throw new IOException("Train files are limited to 2 GB.");
+        if(!pending.hasRemaining())
+            flushPending();
+        pending.put(CAR_RECORD);
+        pending.putDouble(car.getCarLength());
+        pending.putDouble(car.getCarWeight());
+        pending.putDouble(loadWeight);
+        pending.putDouble(loadValue);
+        pending.put(flags);
+        pending.putInt(nameId);
+        pendingCars++;
+    }
+
+    /**
+     * Makes every appended car and the cursor position part of the train on disk. The car records and the name table
+     * are forced to disk before the header that points to them is written, so a crash leaves either the old or the
+     * new train.
+     * @throws IOException
+     *      Thrown when the file cannot be written.
+     */
+    public void commit() throws IOException {
+        flushPending();
+        long carsEnd = carOffset(carCount + flushedCars);
+        if(names.size() > nameCount || carsEnd > namesStart) {
+            byte[] table = encodeNames(names.size());
+            long at = carsEnd + table.length <= namesStart ? carsEnd : Math.max(carsEnd, namesEnd);
+            writeFully(channel, ByteBuffer.wrap(table), at);
+            namesStart = at;
+            namesEnd = at + table.length;
+            nameCount = names.size();
+        }
+        channel.force(false);
+        carCount += flushedCars;
+        flushedCars = 0;
+        writeSlot();
+        channel.force(false);
+        map = null;
+    }
+
+    /**
+     * Closes the file. Cars appended since the last commit are discarded.
+     * @throws IOException
+     *      Thrown when the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        map = null;
+        channel.close();
+    }
+
+    /**
+     * Reads the magic number, the version and both header slots, and takes the state of the newest valid slot.
+     * @throws IOException
+     *      Thrown when the file cannot be read or has no valid header.
+     */
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(DATA_START);
+        int read = 0;
+        while(read < DATA_START) {
+            int n = channel.read(header, read);
+            if(n < 0)
+                throw new IOException("The file is too short to be a train file.");
+            read += n;
+        }
+        header.flip();
+        if(header.getInt(0) != MAGIC)
+            throw new IOException("The file is not a train file.");
+        if(header.getInt(4) != VERSION)
+            throw new IOException("Unsupported train file version " + header.getInt(4) + ".");
+        boolean found = false;
+        for(int slot = 0; slot < 2; slot++) {
+            int at = 8 + slot * SLOT_SIZE;
+            CRC32 crc = new CRC32();
+            for(int i = 0; i < SLOT_SIZE - 8; i++)
+                crc.update(header.get(at + i));
+            if(crc.getValue() != header.getLong(at + SLOT_SIZE - 8))
+                continue;
+            long slotSequence = header.getLong(at);
+            if(!found || slotSequence > sequence) {
+                found = true;
+                sequence = slotSequence;
+                namesStart = header.getLong(at + 8);
+                namesEnd = header.getLong(at + 16);
+                carCount = header.getInt(at + 24);
+                cursorIndex = header.getInt(at + 28);
+                nameCount = header.getInt(at + 32);
+            }
+        }
+        if(!found)
+            throw new IOException("The train file header is damaged.");
+        if(carCount < 0 || nameCount < 0 || namesStart < carOffset(carCount) || namesEnd < namesStart)
+            throw new IOException("The train file header is damaged.");
+        if(carOffset(carCount) > Integer.MAX_VALUE || namesEnd - namesStart > Integer.MAX_VALUE)
+            throw new IOException("The train file header is damaged.");
+        if(namesEnd > channel.size())
+            throw new IOException("The train file is truncated.");
+    }
+
+    /**
+     * Writes the committed state into the older header slot, with the next sequence number and a checksum.
+     * @throws IOException
+     *      Thrown when the file cannot be written.
+     */
+    private void writeSlot() throws IOException {
+        sequence++;
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+        slot.putLong(sequence);
+        slot.putLong(namesStart);
+        slot.putLong(namesEnd);
+        slot.putInt(carCount);
+        slot.putInt(cursorIndex);
+        slot.putInt(nameCount);
+        slot.putInt(0);
+        CRC32 crc = new CRC32();
+        for(int i = 0; i < SLOT_SIZE - 8; i++)
+            crc.update(slot.get(i));
+        slot.putLong(crc.getValue());
+        slot.flip();
+        writeFully(channel, slot, 8 + (sequence % 2) * SLOT_SIZE);
+    }
+
+    /**
+     * @param position
+     *      The position of a car.
+     * @return
+     *      Returns the offset of the car's record in the file.
+     */
+    private static long carOffset(int position) {
+        return DATA_START + (long) position * CAR_RECORD_SIZE;
+    }
+
+    /**
+     * Maps the committed car records, if they are not mapped yet, and reads the name table.
+     * @throws IOException
+     *      Thrown when the file cannot be read or is damaged.
+     */
+    private void mapFile() throws IOException {
+        if(map == null && carCount > 0)
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, carOffset(carCount));
+        readNames();
+    }
+
+    /**
+     * Reads the committed name table the first time it is needed.
+     * @throws IOException
+     *      Thrown when the file cannot be read or the table is damaged.
+     */
+    private void readNames() throws IOException {
+        if(names != null)
+            return;
+        ByteBuffer table = ByteBuffer.allocate((int) (namesEnd - namesStart));
+        while(table.hasRemaining()) {
+            if(channel.read(table, namesStart + table.position()) < 0)
+                throw new IOException("The train file is truncated.");
+        }
+        table.flip();
+        ArrayList<String> read = new ArrayList<String>(nameCount);
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        for(int i = 0; i < nameCount; i++) {
+            if(table.remaining() < 2)
+                throw new IOException("The train file name table is damaged.");
+            int length = table.getShort() & 0xFFFF;
+            if(table.remaining() < length)
+                throw new IOException("The train file name table is damaged.");
+            byte[] bytes = new byte[length];
+            table.get(bytes);
+            String name = new String(bytes, UTF_8);
+            ids.put(name, read.size());
+            read.add(name);
+        }
+        if(table.hasRemaining())
+            throw new IOException("The train file name table is damaged.");
+        names = read;
+        nameIds = ids;
+    }
+
+    /**
+     * Lays out the first names as a name table: each name as its length in bytes followed by its UTF-8 bytes.
+     * @param count
+     *      The number of names to include.
+     * @return
+     *      The bytes of the table.
+     */
+    private byte[] encodeNames(int count) {
+        int size = 0;
+        byte[][] encoded = new byte[count][];
+        for(int i = 0; i < count; i++) {
+            encoded[i] = names.get(i).getBytes(UTF_8);
+            size += 2 + encoded[i].length;
+        }
+        ByteBuffer table = ByteBuffer.allocate(size);
+        for(byte[] bytes : encoded) {
+            table.putShort((short) bytes.length);
+            table.put(bytes);
+        }
+        return table.array();
+    }
+
+    /**
+     * Builds a TrainCar from the car record at an offset in the map.
+     * @param at
+     *      The offset of the record.
+     * @return
+     *      The new TrainCar.
+     * @throws IOException
+     *      Thrown when the record is not a car record or names a load name that does not exist.
+     */
+    private TrainCar readCar(long at) throws IOException {
+        int i = (int) at;
+        if(map.get(i) != CAR_RECORD)
+            throw new IOException("The train file is damaged at byte " + at + ".");
+        TrainCar car = new TrainCar(map.getDouble(i + 1), map.getDouble(i + 9));
+        byte flags = map.get(i + 33);
+        if((flags & LOADED) != 0) {
+            int nameId = map.getInt(i + 34);
+            if(nameId < -1 || nameId >= names.size())
+                throw new IOException("The train file is damaged at byte " + at + ".");
+            String name = nameId < 0 ? null : names.get(nameId);
+            car.setCarLoad(new ProductLoad(name, map.getDouble(i + 17), map.getDouble(i + 25),
+                    (flags & DANGEROUS) != 0));
+        }
+        return car;
+    }
+
+    /**
+     * Finds the number of a load name, adding it to the names written by the next commit if the file does not have it
+     * yet.
+     * @param name
+     *      The load name.
+     * @return
+     *      The number of the name.
+     * @throws IllegalArgumentException
+     *      Thrown when the name is longer than 65535 bytes.
+     */
+    private int nameId(String name) throws IllegalArgumentException {
+        Integer id = nameIds.get(name);
+        if(id != null)
+            return id;
+        if(name.getBytes(UTF_8).length > 0xFFFF)
+            throw new IllegalArgumentException("Load names are limited to 65535 bytes!");
+        id = names.size();
+        names.add(name);
+        nameIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Writes the buffered car records to the file after the cars already written. If they would reach the committed
+     * name table, the table is first moved past them and committed, so the last commit stays readable.
+     * @throws IOException
+     *      Thrown when the file cannot be written.
+     */
+    private void flushPending() throws IOException {
+        pending.flip();
+        long at = carOffset(carCount + flushedCars);
+        long end = at + pending.remaining();
+        if(end > namesStart && nameCount > 0)
+            moveNames(end + (end - DATA_START));
+        writeFully(channel, pending, at);
+        flushedCars += pendingCars;
+        pendingCars = 0;
+        pending.clear();
+    }
+
+    /**
+     * Copies the committed name table to a place at or after an offset, and commits the file with it there. Leaving
+     * room after the offset lets a long run of appends move the table only a few times.
+     * @param after
+     *      The offset the table must not start before.
+     * @throws IOException
+     *      Thrown when the file cannot be written.
+     */
+    private void moveNames(long after) throws IOException {
+        byte[] table = encodeNames(nameCount);
+        long at = Math.max(after, namesEnd);
+        writeFully(channel, ByteBuffer.wrap(table), at);
+        channel.force(false);
+        namesStart = at;
+        namesEnd = at + table.length;
+        writeSlot();
+        channel.force(false);
+        map = null;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+}
@@ -0,0 +1,668 @@
+package com.company;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The TrainIndex class keeps a balanced tree over the TrainCarNodes of a TrainLinkedList, ordered by their position in
+ * the train. The tree is a treap: each node is given a random priority and the tree is kept heap ordered on those
+ * priorities, which keeps it balanced with high probability. Every node also records how many nodes are in its
+ * subtree, so the position of a node and the node at a position can both be found in O(log n) time, and the summed
+ * length, weight and value and the number of dangerous cars in its subtree, so the totals of any run of cars can be
+ * found in O(log n) time as well. The dangerous counts also make the tree an ordered index of the dangerous cars: the
+ * j-th dangerous car, or all k of them, are found by descending only into subtrees that hold one. The root of the tree
+ * records the train it belongs to, which lets a car find its train by walking up the tree, and lets a whole run of
+ * cars change trains by splitting and merging trees in O(log n) time. The tree links live in the TrainCarNodes
+ * themselves so no extra objects are created per car.
+ *
+ * @author Kirat Singh
+ */
+class TrainIndex {
+    static final int LENGTH = 0;
+    static final int WEIGHT = 1;
+    static final int VALUE = 2;
+
+    private TrainLinkedList train;
+    private TrainCarNode root;
+    private Random random;
+
+    /**
+     * Creates an empty index.
+     * @param owner
+     *      The train the index belongs to.
+     */
+    TrainIndex(TrainLinkedList owner) {
+        train = owner;
+        root = null;
+        random = new Random();
+    }
+
+    /**
+     * Finds the train a node is on by walking up to the root of its tree.
+     * @param node
+     *      A node on a train.
+     * @return
+     *      The train.
+     */
+    static TrainLinkedList ownerOf(TrainCarNode node) {
+        while(node.parent != null)
+            node = node.parent;
+        return node.owner;
+    }
+
+    /**
+     * @return
+     *      Returns the number of nodes in the index.
+     */
+    int size() {
+        return count(root);
+    }
+
+    /**
+     * Removes every node from the index. The tree links of the nodes are left as they were.
+     */
+    void clear() {
+        setRoot(null);
+    }
+
+    /**
+     * @param measure
+     *      LENGTH, WEIGHT or VALUE.
+     * @return
+     *      Returns the sum of the measure over every car in the index.
+     */
+    double total(int measure) {
+        return sum(root, measure);
+    }
+
+    /**
+     * @return
+     *      Returns the number of dangerous cars in the index.
+     */
+    int dangerCount() {
+        return root == null ? 0 : root.dangerCount;
+    }
+
+    /**
+     * Moves every node from position k on out of this index and into another, empty index, in O(log n) time.
+     * Precondition:
+     *      0 <= k <= size()
+     * @param k
+     *      The number of nodes that stay in this index.
+     * @param other
+     *      The empty index that receives the rest.
+     */
+    void splitInto(int k, TrainIndex other) {
+        TrainCarNode[] halves = split(root, k);
+        setRoot(halves[0]);
+        other.setRoot(halves[1]);
+    }
+
+    /**
+     * Moves every node of another index to the end of this one, in O(log n) time. The other index is left empty.
+     * @param other
+     *      The index whose nodes follow the nodes of this one.
+     */
+    void append(TrainIndex other) {
+        setRoot(merge(root, other.root));
+        other.setRoot(null);
+    }
+
+    /**
+     * Adds a node to an empty index.
+     * @param node
+     *      The first node of the train.
+     */
+    void insertFirst(TrainCarNode node) {
+        reset(node);
+        setRoot(node);
+    }
+
+    /**
+     * Adds a node to the index directly after a node that is already in it.
+     * @param at
+     *      The node the new node follows in the train.
+     * @param node
+     *      The node being added.
+     */
+    void insertAfter(TrainCarNode at, TrainCarNode node) {
+        reset(node);
+        TrainCarNode parent = at;
+        if(at.right == null) {
+            at.right = node;
+        }else {
+            parent = at.right;
+            while(parent.left != null)
+                parent = parent.left;
+            parent.left = node;
+        }
+        node.parent = parent;
+        refresh(parent);
+        while(node.parent != null && node.priority > node.parent.priority)
+            rotateUp(node);
+    }
+
+    /**
+     * Removes a node from the index.
+     * @param node
+     *      The node being removed, which must be in the index.
+     */
+    void remove(TrainCarNode node) {
+        while(node.left != null && node.right != null) {
+            if(node.left.priority > node.right.priority)
+                rotateUp(node.left);
+            else
+                rotateUp(node.right);
+        }
+        TrainCarNode child = node.left != null ? node.left : node.right;
+        TrainCarNode parent = node.parent;
+        replaceChild(parent, node, child);
+        if(parent != null)
+            refresh(parent);
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+    }
+
+    /**
+     * Recomputes the sums of a node and of every node above it, after the car in the node or the load on that car has
+     * changed.
+     * @param node
+     *      A node in the index.
+     */
+    void refresh(TrainCarNode node) {
+        for(TrainCarNode p = node; p != null; p = p.parent)
+            update(p);
+    }
+
+    /**
+     * Adds a chain of nodes, already linked through their next references, to the index. The chain is built into a
+     * tree of its own in O(k) time and then joined to the index at the right place in O(log n) time.
+     * @param at
+     *      The node the chain follows in the train, or null if the chain goes at the front of the train.
+     * @param first
+     *      The first node of the chain.
+     * @param k
+     *      The number of nodes in the chain.
+     */
+    void insertChainAfter(TrainCarNode at, TrainCarNode first, int k) {
+        TrainCarNode chain = build(first, k);
+        if(root == null) {
+            setRoot(chain);
+            return;
+        }
+        int position = at == null ? 0 : indexOf(at) + 1;
+        TrainCarNode[] halves = split(root, position);
+        setRoot(merge(merge(halves[0], chain), halves[1]));
+    }
+
+    /**
+     * Removes the nodes at positions from (inclusive) to to (exclusive) from the index in O(log n) time. The tree links
+     * of the removed nodes are left as they were.
+     * Precondition:
+     *      0 <= from <= to <= size()
+     * @param from
+     *      The position of the first node to remove.
+     * @param to
+     *      The position after the last node to remove.
+     */
+    void removeRange(int from, int to) {
+        TrainCarNode[] tail = split(root, to);
+        TrainCarNode[] front = split(tail[0], from);
+        setRoot(merge(front[0], tail[1]));
+    }
+
+    /**
+     * Finds the position of a node in the train.
+     * @param node
+     *      A node in the index.
+     * @return
+     *      The position of the node, with 0 being the head of the train.
+     */
+    int indexOf(TrainCarNode node) {
+        int index = count(node.left);
+        for(TrainCarNode x = node; x.parent != null; x = x.parent) {
+            if(x == x.parent.right)
+                index += count(x.parent.left) + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Sums one measure over the first k cars of the train.
+     * Precondition:
+     *      0 <= k <= size()
+     * @param k
+     *      The number of cars to sum over.
+     * @param measure
+     *      LENGTH, WEIGHT (of the cars and their loads) or VALUE (of the loads).
+     * @return
+     *      The sum over the cars at positions 0 to k - 1.
+     */
+    double prefixSum(int k, int measure) {
+        double sum = 0;
+        TrainCarNode x = root;
+        while(k > 0) {
+            int leftCount = count(x.left);
+            if(k <= leftCount) {
+                x = x.left;
+            }else {
+                sum += sum(x.left, measure) + own(x, measure);
+                k -= leftCount + 1;
+                x = x.right;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the dangerous cars among the first k cars of the train.
+     * Precondition:
+     *      0 <= k <= size()
+     * @param k
+     *      The number of cars to count over.
+     * @return
+     *      The number of dangerous cars at positions 0 to k - 1.
+     */
+    int dangerCountBefore(int k) {
+        int dangerous = 0;
+        TrainCarNode x = root;
+        while(k > 0) {
+            int leftCount = count(x.left);
+            if(k <= leftCount) {
+                x = x.left;
+            }else {
+                dangerous += dangerCount(x.left) + (isDangerous(x) ? 1 : 0);
+                k -= leftCount + 1;
+                x = x.right;
+            }
+        }
+        return dangerous;
+    }
+
+    /**
+     * Finds the position of the j-th dangerous car of the train, skipping every subtree that holds no dangerous car.
+     * Precondition:
+     *      0 <= j < dangerCount()
+     * @param j
+     *      The number of dangerous cars ahead of the one being found.
+     * @return
+     *      The position of that car, with 0 being the head of the train.
+     */
+    int dangerousPosition(int j) {
+        int position = 0;
+        TrainCarNode x = root;
+        while(true) {
+            int leftDangerous = dangerCount(x.left);
+            if(j < leftDangerous) {
+                x = x.left;
+                continue;
+            }
+            j -= leftDangerous;
+            if(isDangerous(x)) {
+                if(j == 0)
+                    return position + count(x.left);
+                j--;
+            }
+            position += count(x.left) + 1;
+            x = x.right;
+        }
+    }
+
+    /**
+     * Counts the cars whose front is less than a distance from the head of the train.
+     * @param distance
+     *      The distance from the head of the train, in meters.
+     * @return
+     *      The number of cars, from the head, that start before that distance.
+     */
+    int countStartingBefore(double distance) {
+        int cars = 0;
+        double before = 0;
+        TrainCarNode x = root;
+        while(x != null) {
+            double front = before + sum(x.left, LENGTH);
+            if(front >= distance) {
+                x = x.left;
+            }else {
+                cars += count(x.left) + 1;
+                before = front + x.getCar().getCarLength();
+                x = x.right;
+            }
+        }
+        return cars;
+    }
+
+    /**
+     * Adds every node holding a dangerous car to a list, in train order. Subtrees without a dangerous car are skipped,
+     * so only O(k log(n / k)) nodes are visited for k dangerous cars.
+     * @param out
+     *      The list the nodes are added to.
+     */
+    void collectDangerous(List<TrainCarNode> out) {
+        collectDangerous(root, out);
+    }
+
+    /**
+     * Finds the node at a position in the train.
+     * Precondition:
+     *      0 <= index < size()
+     * @param index
+     *      The position of the node, with 0 being the head of the train.
+     * @return
+     *      The node at that position.
+     */
+    TrainCarNode get(int index) {
+        TrainCarNode x = root;
+        while(true) {
+            int leftCount = count(x.left);
+            if(index < leftCount) {
+                x = x.left;
+            }else if(index == leftCount) {
+                return x;
+            }else {
+                index -= leftCount + 1;
+                x = x.right;
+            }
+        }
+    }
+
+    /**
+     * Adds the nodes of a subtree holding a dangerous car to a list, in train order.
+     * @param x
+     *      The root of the subtree, or null.
+     * @param out
+     *      The list the nodes are added to.
+     */
+    private static void collectDangerous(TrainCarNode x, List<TrainCarNode> out) {
+        while(x != null && x.dangerCount > 0) {
+            collectDangerous(x.left, out);
+            if(isDangerous(x))
+                out.add(x);
+            x = x.right;
+        }
+    }
+
+    /**
+     * Builds a tree out of a chain of nodes in O(k) time. Each node is given a fresh priority and the nodes are pushed
+     * onto a stack that holds the rightmost path of the tree built so far. A node's subtree is complete once it is
+     * popped, so its count is set at that point.
+     * @param first
+     *      The first node of the chain.
+     * @param k
+     *      The number of nodes in the chain.
+     * @return
+     *      The root of the new tree.
+     */
+    private TrainCarNode build(TrainCarNode first, int k) {
+        TrainCarNode[] stack = new TrainCarNode[Math.min(k, 64)];
+        int top = 0;
+        TrainCarNode node = first;
+        for(int i = 0; i < k; i++) {
+            reset(node);
+            TrainCarNode last = null;
+            while(top > 0 && stack[top - 1].priority < node.priority) {
+                last = stack[--top];
+                update(last);
+            }
+            node.left = last;
+            if(last != null)
+                last.parent = node;
+            if(top > 0) {
+                stack[top - 1].right = node;
+                node.parent = stack[top - 1];
+            }
+            if(top == stack.length) {
+                TrainCarNode[] bigger = new TrainCarNode[stack.length * 2];
+                System.arraycopy(stack, 0, bigger, 0, top);
+                stack = bigger;
+            }
+            stack[top++] = node;
+            node = node.getNext();
+        }
+        while(top > 1)
+            update(stack[--top]);
+        update(stack[0]);
+        return stack[0];
+    }
+
+    /**
+     * Joins two trees, where every node of the first comes before every node of the second.
+     * @param a
+     *      The root of the front tree, or null.
+     * @param b
+     *      The root of the back tree, or null.
+     * @return
+     *      The root of the joined tree. Its parent reference is not set.
+     */
+    private static TrainCarNode merge(TrainCarNode a, TrainCarNode b) {
+        if(a == null)
+            return b;
+        if(b == null)
+            return a;
+        if(a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.right.parent = a;
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.left.parent = b;
+        update(b);
+        return b;
+    }
+
+    /**
+     * Splits a tree in two, the first holding the first k nodes and the second holding the rest.
+     * @param t
+     *      The root of the tree, or null.
+     * @param k
+     *      The number of nodes to put in the first tree.
+     * @return
+     *      An array holding the roots of the two trees, either of which may be null. Their parent references are
+     *      cleared.
+     */
+    private static TrainCarNode[] split(TrainCarNode t, int k) {
+        if(t == null)
+            return new TrainCarNode[2];
+        TrainCarNode[] halves;
+        if(count(t.left) >= k) {
+            halves = split(t.left, k);
+            t.left = halves[1];
+            if(t.left != null)
+                t.left.parent = t;
+            update(t);
+            halves[1] = t;
+        }else {
+            halves = split(t.right, k - count(t.left) - 1);
+            t.right = halves[0];
+            if(t.right != null)
+                t.right.parent = t;
+            update(t);
+            halves[0] = t;
+        }
+        t.parent = null;
+        if(halves[0] != null)
+            halves[0].parent = null;
+        if(halves[1] != null)
+            halves[1].parent = null;
+        return halves;
+    }
+
+    /**
+     * Turns a node into a single node tree with a fresh priority.
+     * @param node
+     *      The node being added to the index.
+     */
+    private void reset(TrainCarNode node) {
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+        node.priority = random.nextInt();
+        update(node);
+    }
+
+    /**
+     * Rotates a node above its parent, keeping the order of the nodes and the subtree counts intact.
+     * @param x
+     *      A node that has a parent.
+     */
+    private void rotateUp(TrainCarNode x) {
+        TrainCarNode p = x.parent;
+        TrainCarNode g = p.parent;
+        if(x == p.left) {
+            p.left = x.right;
+            if(x.right != null)
+                x.right.parent = p;
+            x.right = p;
+        }else {
+            p.right = x.left;
+            if(x.left != null)
+                x.left.parent = p;
+            x.left = p;
+        }
+        p.parent = x;
+        replaceChild(g, p, x);
+        update(p);
+        update(x);
+    }
+
+    /**
+     * Puts a new child in the place of an old one.
+     * @param parent
+     *      The parent of the old child, or null if the old child is the root.
+     * @param oldChild
+     *      The child being replaced.
+     * @param newChild
+     *      The replacement, which may be null.
+     */
+    private void replaceChild(TrainCarNode parent, TrainCarNode oldChild, TrainCarNode newChild) {
+        if(parent == null)
+            setRoot(newChild);
+        else if(parent.left == oldChild)
+            parent.left = newChild;
+        else
+            parent.right = newChild;
+        if(newChild != null)
+            newChild.parent = parent;
+    }
+
+    /**
+     * Makes a node the root of the tree and records the train on it.
+     * @param node
+     *      The new root, or null for an empty tree.
+     */
+    private void setRoot(TrainCarNode node) {
+        root = node;
+        if(node != null) {
+            node.parent = null;
+            node.owner = train;
+        }
+    }
+
+    /**
+     * Recomputes the subtree count, sums and dangerous count of a node from its children and its own car.
+     * @param x
+     *      The node to update.
+     */
+    private static void update(TrainCarNode x) {
+        TrainCarNode l = x.left;
+        TrainCarNode r = x.right;
+        TrainCar car = x.getCar();
+        double length = car.getCarLength();
+        double weight = car.getCarWeight();
+        double value = 0;
+        int dangerous = 0;
+        if(!car.isEmpty()) {
+            ProductLoad load = car.getCarLoad();
+            weight += load.getWeight();
+            value = load.getValue();
+            if(load.isDangerous())
+                dangerous = 1;
+        }
+        int count = 1;
+        if(l != null) {
+            count += l.count;
+            length += l.sumLength;
+            weight += l.sumWeight;
+            value += l.sumValue;
+            dangerous += l.dangerCount;
+        }
+        if(r != null) {
+            count += r.count;
+            length += r.sumLength;
+            weight += r.sumWeight;
+            value += r.sumValue;
+            dangerous += r.dangerCount;
+        }
+        x.count = count;
+        x.sumLength = length;
+        x.sumWeight = weight;
+        x.sumValue = value;
+        x.dangerCount = dangerous;
+    }
+
+    /**
+     * @param x
+     *      A node, or null.
+     * @param measure
+     *      LENGTH, WEIGHT or VALUE.
+     * @return
+     *      Returns the sum of the measure over the subtree, or 0 for null.
+     */
+    private static double sum(TrainCarNode x, int measure) {
+        if(x == null)
+            return 0;
+        if(measure == LENGTH)
+            return x.sumLength;
+        return measure == WEIGHT ? x.sumWeight : x.sumValue;
+    }
+
+    /**
+     * @param x
+     *      A node.
+     * @param measure
+     *      LENGTH, WEIGHT or VALUE.
+     * @return
+     *      Returns the measure of the node's own car alone.
+     */
+    private static double own(TrainCarNode x, int measure) {
+        TrainCar car = x.getCar();
+        if(measure == LENGTH)
+            return car.getCarLength();
+        if(measure == WEIGHT)
+            return car.isEmpty() ? car.getCarWeight() : car.getCarWeight() + car.getCarLoad().getWeight();
+        return car.isEmpty() ? 0 : car.getCarLoad().getValue();
+    }
+
+    /**
+     * @param x
+     *      A node, or null.
+     * @return
+     *      Returns the number of dangerous cars in the subtree, or 0 for null.
+     */
+    private static int dangerCount(TrainCarNode x) {
+        return x == null ? 0 : x.dangerCount;
+    }
+
+    /**
+     * @param x
+     *      A node.
+     * @return
+     *      Returns true if the node's own car carries a dangerous load.
+     */
+    private static boolean isDangerous(TrainCarNode x) {
+        TrainCar car = x.getCar();
+        return !car.isEmpty() && car.getCarLoad().isDangerous();
+    }
+
+    /**
+     * @param x
+     *      A node, or null.
+     * @return
+     *      Returns the number of nodes in the subtree, or 0 for null.
+     */
+    private static int count(TrainCarNode x) {
+        return x == null ? 0 : x.count;
+    }
+}
@@ -0,0 +1,583 @@
+package com.company;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The TrainJournal records the changes made to a TrainLinkedList so that they can be undone and redone, and so that
+ * the train can be rebuilt by replaying them. Inserts, removals, replaced cars, load changes and cursor moves are each
+ * written as one fixed size binary record into a ring buffer: an operation byte, the position it happened at, the
+ * cursor position before it, and the length, weight and load of up to two cars, with load names stored once in a
+ * name table and referred to by number. When the ring is full the oldest record is overwritten.
+ *
+ * An undo or redo step reads one record and makes one change to the train at a known position, which takes O(log n)
+ * time for finding the position through the TrainIndex and no time at all for finding the record. Operations on many
+ * cars, such as removing the dangerous cars or a range of cars, are recorded as a group of records that is undone and
+ * redone as one step. An operation whose group of records does not fit in the ring cannot be undone at all: the
+ * journal is cleared, and the rest of the group is not recorded. Splitting, coupling and rearranging a train are not
+ * recorded, and clear the journal.
+ *
+ * Undoing and redoing build new TrainCar and ProductLoad objects from the records, so a car that comes back is equal
+ * to the car that left but is not the same object.
+ *
+ * @author Kirat Singh
+ */
+public class TrainJournal {
+    private static final int MAGIC = 0x54524E4A;
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 88;
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte REPLACE = 3;
+    private static final byte LOAD = 4;
+    private static final byte MOVE = 5;
+    private static final byte CONTINUES = (byte) 0x80;
+    private static final byte PRESENT = 1;
+    private static final byte LOADED = 2;
+    private static final byte DANGEROUS = 4;
+
+    // Offsets within a record. The two cars, or loads, of a record are A (before) and B (after).
+    private static final int OP = 0;
+    private static final int FLAGS_A = 1;
+    private static final int FLAGS_B = 2;
+    private static final int POSITION = 4;
+    private static final int CURSOR = 8;
+    private static final int NAME_A = 12;
+    private static final int NAME_B = 16;
+    private static final int CAR_A = 20;
+    private static final int CAR_B = 52;
+
+    private ByteBuffer records;
+    private int capacity;
+    private long start;
+    private long current;
+    private long end;
+    private long groupStart;
+    private boolean dropping;
+    private boolean complete;
+    private boolean replaying;
+    private TrainLinkedList train;
+
+    private ArrayList<String> names;
+    private HashMap<String, Integer> nameIds;
+
+    /**
+     * Creates an empty journal.
+     * @param recordCapacity
+     *      The number of records the ring holds before the oldest are overwritten.
+     * @throws IllegalArgumentException
+     *      Thrown when the capacity is less than 1.
+     */
+    public TrainJournal(int recordCapacity) throws IllegalArgumentException{
+        if(recordCapacity < 1)
+            throw new IllegalArgumentException("The journal must hold at least one record!");
+        capacity = recordCapacity;
+        records = ByteBuffer.allocate(capacity * RECORD_SIZE);
+        names = new ArrayList<String>();
+        nameIds = new HashMap<String, Integer>();
+        complete = true;
+    }
+
+    /**
+     * Undoes the most recent change still in the journal, or the most recent group of changes made by one operation.
+     * @return
+     *      True if a change was undone, false if there was nothing to undo.
+     * @throws IllegalArgumentException
+     *      Thrown when the journal is not recording a train.
+     */
+    public boolean undo() throws IllegalArgumentException{
+        checkTrain();
+        if(current == start)
+            return false;
+        replaying = true;
+        try {
+            boolean continues;
+            do {
+                current--;
+                int at = offset(current);
+                continues = (records.get(at + OP) & CONTINUES) != 0;
+                undo(at);
+            }while(continues && current > start);
+        }finally {
+            replaying = false;
+        }
+        return true;
+    }
+
+    /**
+     * Redoes the most recently undone change, or group of changes.
+     * @return
+     *      True if a change was redone, false if there was nothing to redo.
+     * @throws IllegalArgumentException
+     *      Thrown when the journal is not recording a train.
+     */
+    public boolean redo() throws IllegalArgumentException{
+        checkTrain();
+        if(current == end)
+            return false;
+        replaying = true;
+        try {
+            do {
+                redo(train, offset(current));
+                current++;
+            }while(current < end && (records.get(offset(current) + OP) & CONTINUES) != 0);
+        }finally {
+            replaying = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return
+     *      Returns true if there is a change to undo.
+     */
+    public boolean canUndo() {
+        return current > start;
+    }
+
+    /**
+     * @return
+     *      Returns true if there is an undone change to redo.
+     */
+    public boolean canRedo() {
+        return current < end;
+    }
+
+    /**
+     * Builds a new train by replaying every change in the journal that has not been undone, in order, starting from an
+     * empty train. Each record is applied directly, with no prompts or parsing.
+     * @return
+     *      The rebuilt train.
+     * @throws IllegalArgumentException
+     *      Thrown when the journal no longer holds the whole history of its train, because it was started on a train
+     *      that already had cars, old records were overwritten, or it was cleared.
+     */
+    public TrainLinkedList replay() throws IllegalArgumentException{
+        if(!complete)
+            throw new IllegalArgumentException("The journal no longer holds the whole history of its train!");
+        TrainLinkedList rebuilt = new TrainLinkedList();
+        for(long i = start; i < current; i++)
+            redo(rebuilt, offset(i));
+        return rebuilt;
+    }
+
+    /**
+     * Writes the changes in the journal that have not been undone to a stream, in a compact binary form that readFrom
+     * reads back.
+     * @param out
+     *      The stream to write to. It is not closed.
+     * @throws IOException
+     *      Thrown when the stream cannot be written to.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeBoolean(complete);
+        data.writeInt(names.size());
+        for(String name : names) {
+            data.writeBoolean(name != null);
+            if(name != null)
+                data.writeUTF(name);
+        }
+        data.writeInt((int) (current - start));
+        byte[] record = new byte[RECORD_SIZE];
+        for(long i = start; i < current; i++) {
+            int at = offset(i);
+            for(int b = 0; b < RECORD_SIZE; b++)
+                record[b] = records.get(at + b);
+            data.write(record);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a journal written by writeTo. The journal is not recording any train, but it can be replayed.
+     * @param in
+     *      The stream to read from. It is not closed.
+     * @return
+     *      The journal.
+     * @throws IOException
+     *      Thrown when the stream cannot be read or does not hold a journal.
+     */
+    public static TrainJournal readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if(data.readInt() != MAGIC || data.readInt() != VERSION)
+            throw new IOException("That is not a train journal.");
+        boolean complete = data.readBoolean();
+        int nameCount = data.readInt();
+        ArrayList<String> names = new ArrayList<String>(nameCount);
+        for(int i = 0; i < nameCount; i++)
+            names.add(data.readBoolean() ? data.readUTF() : null);
+        int count = data.readInt();
+        TrainJournal journal = new TrainJournal(Math.max(1, count));
+        journal.complete = complete;
+        for(String name : names)
+            journal.nameId(name);
+        byte[] record = new byte[RECORD_SIZE];
+        for(int i = 0; i < count; i++) {
+            data.readFully(record);
+            int at = journal.offset(i);
+            for(int b = 0; b < RECORD_SIZE; b++)
+                journal.records.put(at + b, record[b]);
+        }
+        journal.current = count;
+        journal.end = count;
+        return journal;
+    }
+
+    /**
+     * Starts or stops recording a train. Called by TrainLinkedList.setJournal.
+     * @param newTrain
+     *      The train, or null to stop recording.
+     */
+    void attach(TrainLinkedList newTrain) {
+        train = newTrain;
+        if(newTrain != null && newTrain.size() > 0)
+            complete = false;
+    }
+
+    /**
+     * @return
+     *      Returns the train being recorded, or null.
+     */
+    TrainLinkedList getTrain() {
+        return train;
+    }
+
+    /**
+     * Records that a car was inserted.
+     * @param position
+     *      The position of the new car.
+     * @param cursorBefore
+     *      The cursor position before the insert, or -1 if it need not be restored on undo.
+     * @param car
+     *      The new car.
+     * @param continues
+     *      True if this record belongs to the same operation as the record before it.
+     */
+    void inserted(int position, int cursorBefore, TrainCar car, boolean continues) {
+        int at = append(INSERT, position, cursorBefore, continues);
+        if(at >= 0)
+            writeCar(at, FLAGS_A, NAME_A, CAR_A, car);
+    }
+
+    /**
+     * Records that a car was removed.
+     * @param position
+     *      The position the car had.
+     * @param cursorBefore
+     *      The cursor position before the removal, or -1 if it need not be restored on undo.
+     * @param car
+     *      The removed car.
+     * @param continues
+     *      True if this record belongs to the same operation as the record before it.
+     */
+    void removed(int position, int cursorBefore, TrainCar car, boolean continues) {
+        int at = append(REMOVE, position, cursorBefore, continues);
+        if(at >= 0)
+            writeCar(at, FLAGS_A, NAME_A, CAR_A, car);
+    }
+
+    /**
+     * Records that the car at the cursor was replaced by another.
+     * @param position
+     *      The position of the cursor.
+     * @param oldCar
+     *      The car taken off the train.
+     * @param newCar
+     *      The car that took its place.
+     */
+    void replaced(int position, TrainCar oldCar, TrainCar newCar) {
+        int at = append(REPLACE, position, position, false);
+        if(at >= 0) {
+            writeCar(at, FLAGS_A, NAME_A, CAR_A, oldCar);
+            writeCar(at, FLAGS_B, NAME_B, CAR_B, newCar);
+        }
+    }
+
+    /**
+     * Records that the load on a car was replaced or changed.
+     * @param position
+     *      The position of the car.
+     * @param cursorBefore
+     *      The cursor position.
+     * @param oldLoad
+     *      The load as it was, or null if the car was empty.
+     * @param newLoad
+     *      The load as it is now, or null if the car is empty.
+     */
+    void loadChanged(int position, int cursorBefore, ProductLoad oldLoad, ProductLoad newLoad) {
+        int at = append(LOAD, position, cursorBefore, false);
+        if(at >= 0) {
+            writeLoad(at, FLAGS_A, NAME_A, CAR_A, oldLoad);
+            writeLoad(at, FLAGS_B, NAME_B, CAR_B, newLoad);
+        }
+    }
+
+    /**
+     * Records that the cursor moved.
+     * @param from
+     *      The position the cursor was at.
+     * @param to
+     *      The position the cursor is at now.
+     * @param continues
+     *      True if this record belongs to the same operation as the record before it.
+     */
+    void moved(int from, int to, boolean continues) {
+        append(MOVE, to, from, continues);
+    }
+
+    /**
+     * Forgets every record, after an operation the journal cannot undo. The journal can no longer rebuild its train.
+     */
+    void clear() {
+        if(replaying)
+            return;
+        start = 0;
+        current = 0;
+        end = 0;
+        groupStart = 0;
+        complete = false;
+    }
+
+    /**
+     * Starts a new record after the current one, dropping any undone records, and overwriting the oldest operation if
+     * the ring is full. If the operation being recorded fills the whole ring by itself, the journal is cleared and the
+     * rest of its records are dropped, since undoing part of an operation would lose the cars it did not reach.
+     * @param op
+     *      The operation.
+     * @param position
+     *      The position it happened at.
+     * @param cursorBefore
+     *      The cursor position before it.
+     * @param continues
+     *      True if the record belongs to the same operation as the record before it.
+     * @return
+     *      The offset of the record in the ring, or -1 if the change is being made by an undo or redo and is not
+     *      recorded.
+     */
+    private int append(byte op, int position, int cursorBefore, boolean continues) {
+        if(replaying)
+            return -1;
+        if(!continues)
+            dropping = false;
+        else if(dropping)
+            return -1;
+        end = current;
+        if(!continues)
+            groupStart = end;
+        if(end - start == capacity) {
+            if(start == groupStart) {
+                clear();
+                dropping = true;
+                return -1;
+            }
+            // Drop the whole oldest operation, so that undo never stops part of the way through one.
+            do {
+                start++;
+            }while(start < end && (records.get(offset(start) + OP) & CONTINUES) != 0);
+            complete = false;
+        }
+        int at = offset(end);
+        records.put(at + OP, continues ? (byte) (op | CONTINUES) : op);
+        records.putInt(at + POSITION, position);
+        records.putInt(at + CURSOR, cursorBefore);
+        records.put(at + FLAGS_A, (byte) 0);
+        records.put(at + FLAGS_B, (byte) 0);
+        end++;
+        current = end;
+        return at;
+    }
+
+    /**
+     * Reverses the change in a record.
+     * @param at
+     *      The offset of the record.
+     */
+    private void undo(int at) {
+        int position = records.getInt(at + POSITION);
+        switch(records.get(at + OP) & ~CONTINUES) {
+            case INSERT:
+                train.seek(position);
+                train.removeCursor();
+                break;
+            case REMOVE:
+                train.insertAt(position, readCar(at, FLAGS_A, NAME_A, CAR_A));
+                break;
+            case REPLACE:
+                train.seek(position);
+                train.setCursorData(readCar(at, FLAGS_A, NAME_A, CAR_A));
+                break;
+            case LOAD:
+                train.getCar(position).setCarLoad(readLoad(at, FLAGS_A, NAME_A, CAR_A));
+                break;
+            default:
+                break;
+        }
+        int cursorBefore = records.getInt(at + CURSOR);
+        if(cursorBefore >= 0 && cursorBefore < train.size())
+            train.seek(cursorBefore);
+    }
+
+    /**
+     * Makes the change in a record again.
+     * @param target
+     *      The train to make it on.
+     * @param at
+     *      The offset of the record.
+     */
+    private void redo(TrainLinkedList target, int at) {
+        int position = records.getInt(at + POSITION);
+        switch(records.get(at + OP) & ~CONTINUES) {
+            case INSERT:
+                target.insertAt(position, readCar(at, FLAGS_A, NAME_A, CAR_A));
+                break;
+            case REMOVE:
+                target.seek(position);
+                target.removeCursor();
+                break;
+            case REPLACE:
+                target.seek(position);
+                target.setCursorData(readCar(at, FLAGS_B, NAME_B, CAR_B));
+                break;
+            case LOAD:
+                target.getCar(position).setCarLoad(readLoad(at, FLAGS_B, NAME_B, CAR_B));
+                break;
+            case MOVE:
+                if(position >= 0)
+                    target.seek(position);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Writes a car into one side of a record.
+     * @param at
+     *      The offset of the record.
+     * @param flags
+     *      The offset of the side's flag byte.
+     * @param name
+     *      The offset of the side's name number.
+     * @param car
+     *      The offset of the side's numbers.
+     * @param value
+     *      The car.
+     */
+    private void writeCar(int at, int flags, int name, int car, TrainCar value) {
+        writeLoad(at, flags, name, car, value.getCarLoad());
+        records.putDouble(at + car + 16, value.getCarLength());
+        records.putDouble(at + car + 24, value.getCarWeight());
+    }
+
+    /**
+     * Writes a load into one side of a record.
+     * @param at
+     *      The offset of the record.
+     * @param flags
+     *      The offset of the side's flag byte.
+     * @param name
+     *      The offset of the side's name number.
+     * @param load
+     *      The offset of the side's numbers.
+     * @param value
+     *      The load, or null.
+     */
+    private void writeLoad(int at, int flags, int name, int load, ProductLoad value) {
+        if(value == null) {
+            records.put(at + flags, PRESENT);
+            records.putInt(at + name, -1);
+            records.putDouble(at + load, 0);
+            records.putDouble(at + load + 8, 0);
+            return;
+        }
+        records.put(at + flags, (byte) (PRESENT | LOADED | (value.isDangerous() ? DANGEROUS : 0)));
+        records.putInt(at + name, nameId(value.getName()));
+        records.putDouble(at + load, value.getWeight());
+        records.putDouble(at + load + 8, value.getValue());
+    }
+
+    /**
+     * Builds a car from one side of a record.
+     * @param at
+     *      The offset of the record.
+     * @param flags
+     *      The offset of the side's flag byte.
+     * @param name
+     *      The offset of the side's name number.
+     * @param car
+     *      The offset of the side's numbers.
+     * @return
+     *      The new car.
+     */
+    private TrainCar readCar(int at, int flags, int name, int car) {
+        TrainCar value = new TrainCar(records.getDouble(at + car + 16), records.getDouble(at + car + 24));
+        value.setCarLoad(readLoad(at, flags, name, car));
+        return value;
+    }
+
+    /**
+     * Builds a load from one side of a record.
+     * @param at
+     *      The offset of the record.
+     * @param flags
+     *      The offset of the side's flag byte.
+     * @param name
+     *      The offset of the side's name number.
+     * @param load
+     *      The offset of the side's numbers.
+     * @return
+     *      The new load, or null if the side holds no load.
+     */
+    private ProductLoad readLoad(int at, int flags, int name, int load) {
+        byte bits = records.get(at + flags);
+        if((bits & LOADED) == 0)
+            return null;
+        return new ProductLoad(names.get(records.getInt(at + name)), records.getDouble(at + load),
+                records.getDouble(at + load + 8), (bits & DANGEROUS) != 0);
+    }
+
+    /**
+     * Finds the number of a load name in the name table, adding it if it is new.
+     * @param name
+     *      The name, which may be null.
+     * @return
+     *      The number of the name.
+     */
+    private int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if(id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * @param sequence
+     *      The sequence number of a record.
+     * @return
+     *      Returns the offset of the record in the ring.
+     */
+    private int offset(long sequence) {
+        return (int) (sequence % capacity) * RECORD_SIZE;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *      Thrown when the journal is not recording a train.
+     */
+    private void checkTrain() throws IllegalArgumentException{
+        if(train == null)
+            throw new IllegalArgumentException("The journal is not recording a train!");
+    }
+}
@@ -1,5 +1,18 @@
 package com.company;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * The TrainLinkedList class organizes all of the TrainCarNodes into a doubly linked list. It contains all the methods
  * needed to add and remove from the linked list. The TrainLinkedList contains references to the head and tail of the
@@ -9,7 +22,12 @@ package com.company;
  *
  * @author Kirat Singh
  */
-public class TrainLinkedList {
+public class TrainLinkedList implements Iterable<TrainCar> {
+    private static final int DEFAULT_NODE_POOL = 64;
+    // removeDangerousCars sweeps the whole train once one car in this many is dangerous, where unlinking the dangerous
+    // cars one at a time through the TrainIndex stops being the faster of the two.
+    private static final int SWEEP_RATIO = 16;
+
     private TrainCarNode head;
     private TrainCarNode tail;
     private TrainCarNode cursor;
@@ -21,6 +39,21 @@ public class TrainLinkedList {
     private int numDangerousCars;
     private boolean isDangerous;
 
+    private ProductTotal[] products;
+    private boolean productsStale;
+    private TrainIndex index;
+    private TrainListener[] listeners;
+    private final StampedLock totalsLock;
+    private long version;
+    private long changeStamp;
+    private ProductLoad changingLoad;
+    private TrainJournal journal;
+    private TrainCarNode freeNodes;
+    private int freeNodeCount;
+    private int nodePoolCapacity;
+    private long nodesAllocated;
+    private final TrainMetrics metrics;
+
     /**
      * Creates an empty TrainLinkedList, with no head, tail, or cursor.
      *
@@ -32,6 +65,12 @@ public class TrainLinkedList {
         head = null;
         tail = null;
         cursor = null;
+        products = new ProductTotal[16];
+        index = new TrainIndex(this);
+        listeners = new TrainListener[0];
+        totalsLock = new StampedLock();
+        nodePoolCapacity = DEFAULT_NODE_POOL;
+        metrics = new TrainMetrics(this);
     }
 
     /**
@@ -54,17 +93,113 @@ public class TrainLinkedList {
      * Precondition:
      *      The list is not empty (cursor is not null).
      * Postcondition:
-     *      The cursor node now contains a reference to car as its data.
+     *      The cursor node now contains a reference to car as its data, and the train totals reflect the new car.
      * @param car
      *      The new TrainCar for the node.
+     * @throws IllegalArgumentException
+     *      Thrown when the list is empty, the car is null or already on a train, or the car's weight/length are
+     *      invalid.
      */
-    public void setCursorData(TrainCar car){
-        if(cursor != null)
+    public void setCursorData(TrainCar car) throws IllegalArgumentException{
+        if(cursor != null) {
+            TrainCar oldCar = cursor.getCar();
+            if(car == oldCar)
+                return;
+            checkCar(car);
+            long stamp = beginUpdate();
+            removeCarTotals(oldCar);
+            detach(oldCar);
             cursor.setCar(car);
+            attach(car, cursor);
+            addCarTotals(car);
+            index.refresh(cursor);
+            endUpdate(stamp);
+            if(journal != null)
+                journal.replaced(index.indexOf(cursor), oldCar, car);
+            for(TrainListener listener : listeners)
+                listener.carReplaced(oldCar, car);
+        }else
+            throw new IllegalArgumentException("The List is currently empty!");
+    }
+
+    /**
+     * Places a load on the car referenced by the cursor, replacing any load the car already holds.
+     * Precondition:
+     *      The list is not empty (cursor is not null).
+     * Postcondition:
+     *      The cursor's car now holds the new load, and the weight, value and dangerous totals of the train no longer
+     *      count the old load.
+     * @param load
+     *      The new ProductLoad, or null to empty the car.
+     * @throws IllegalArgumentException
+     *      Thrown when the list is empty or the load is already on another car.
+     */
+    public void setCursorLoad(ProductLoad load) throws IllegalArgumentException{
+        if(cursor != null)
+            cursor.getCar().setCarLoad(load);
         else
             throw new IllegalArgumentException("The List is currently empty!");
     }
 
+    /**
+     * Replaces the load on the car in a node, keeping the totals, product index and TrainIndex sums exact. Called by
+     * TrainCar.setCarLoad for cars on this train.
+     * @param node
+     *      The node holding the car.
+     * @param load
+     *      The new ProductLoad, or null to empty the car.
+     */
+    void replaceLoad(TrainCarNode node, ProductLoad load) {
+        TrainCar car = node.getCar();
+        ProductLoad oldLoad = car.getCarLoad();
+        long stamp = beginUpdate();
+        if(oldLoad != null)
+            removeLoadTotals(oldLoad);
+        car.putLoad(load);
+        if(load != null)
+            addLoadTotals(load);
+        index.refresh(node);
+        endUpdate(stamp);
+        if(journal != null)
+            journal.loadChanged(index.indexOf(node), getCursorIndex(), oldLoad, load);
+        for(TrainListener listener : listeners)
+            listener.loadReplaced(car, oldLoad, load);
+    }
+
+    /**
+     * Takes the load on the car in a node out of the totals before one of the load's fields changes in place. The
+     * totals stay locked against snapshots until loadChanged puts the load back in, so no snapshot sees the train
+     * half way through the change. Called by ProductLoad through its car.
+     * @param node
+     *      The node holding the car.
+     */
+    void loadChanging(TrainCarNode node) {
+        ProductLoad load = node.getCar().getCarLoad();
+        if(listeners.length > 0 || journal != null)
+            changingLoad = new ProductLoad(load.getName(), load.getWeight(), load.getValue(), load.isDangerous());
+        changeStamp = beginUpdate();
+        removeLoadTotals(load);
+    }
+
+    /**
+     * Puts the load on the car in a node back into the totals after one of its fields changed in place.
+     * @param node
+     *      The node holding the car.
+     */
+    void loadChanged(TrainCarNode node) {
+        TrainCar car = node.getCar();
+        ProductLoad load = car.getCarLoad();
+        addLoadTotals(load);
+        index.refresh(node);
+        endUpdate(changeStamp);
+        ProductLoad oldLoad = changingLoad;
+        changingLoad = null;
+        if(journal != null)
+            journal.loadChanged(index.indexOf(node), getCursorIndex(), oldLoad, load);
+        for(TrainListener listener : listeners)
+            listener.loadChanged(car, oldLoad, load);
+    }
+
     /**
      * Inserts a car into the train after the cursor position.
      * Preconditions:
@@ -80,51 +215,81 @@ public class TrainLinkedList {
      *      Thrown when the new car is null or weight/value are invalid.
      */
     public void insertAfterCursor(TrainCar newCar) throws IllegalArgumentException{
-        if(newCar != null) {
-            TrainCarNode node = new TrainCarNode(newCar);
-
-            double carLength = node.getCar().getCarLength();
-            double carWeight = node.getCar().getCarWeight();
-            if(carLength > 0 && carWeight > 0) {
-                double prodWeight = 0;
-                double prodValue = 0;
-                boolean dangerous = false;
-                if (!node.getCar().isEmpty()) {
-                    prodWeight = node.getCar().getCarLoad().getWeight();
-                    prodValue = node.getCar().getCarLoad().getValue();
-                    dangerous = node.getCar().getCarLoad().isDangerous();
-                }
+        long start = System.nanoTime();
+        checkCar(newCar);
+        int cursorBefore = journal == null ? -1 : getCursorIndex();
+        TrainCarNode node = newNode(newCar);
+        attach(newCar, node);
 
-                if (head == null && tail == null) {
-                    head = node;
-                    tail = node;
-                } else if (cursor == tail) {
-                    tail.setNext(node);
-                    node.setPrev(tail);
-                    node.setNext(null);
-                    tail = node;
-                } else {
-                    node.setNext(cursor.getNext());
-                    node.setPrev(cursor);
-                    cursor.getNext().setPrev(node);
-                    cursor.setNext(node);
-                }
+        if (head == null && tail == null) {
+            head = node;
+            tail = node;
+            index.insertFirst(node);
+        } else if (cursor == tail) {
+            tail.setNext(node);
+            node.setPrev(tail);
+            node.setNext(null);
+            tail = node;
+        } else {
+            node.setNext(cursor.getNext());
+            node.setPrev(cursor);
+            cursor.getNext().setPrev(node);
+            cursor.setNext(node);
+        }
+        if (node != head)
+            index.insertAfter(cursor, node);
 
-                length += carLength;
-                weight += carWeight + prodWeight;
-                value += prodValue;
-                if (dangerous) {
-                    if (numDangerousCars == 0) {
-                        isDangerous = true;
-                    }
-                    numDangerousCars++;
-                }
-                size++;
-                cursor = node;
-            }else
-                throw new IllegalArgumentException("Weight/length values must be greater than 0!");
-        }else
-            throw new IllegalArgumentException("That car has not been created!");
+        long stamp = beginUpdate();
+        addCarTotals(newCar);
+        endUpdate(stamp);
+        cursor = node;
+        metrics.record(TrainMetrics.INSERT, start);
+        if(journal != null)
+            journal.inserted(cursorBefore + 1, cursorBefore, newCar, false);
+        for(TrainListener listener : listeners)
+            listener.carInserted(newCar);
+    }
+
+    /**
+     * Inserts a car into the train so that it has the given position, and moves the cursor to it. Used by the
+     * TrainJournal to put back removed cars, including at the head of the train, which insertAfterCursor cannot reach.
+     * Preconditions:
+     * 0 <= position <= size()
+     * @param position
+     *      The position the car will have, with 0 being the head of the train.
+     * @param newCar
+     *      The car to insert.
+     * @throws IllegalArgumentException
+     *      Thrown when the position is not within the train, or the car is null, already on a train, or invalid.
+     */
+    void insertAt(int position, TrainCar newCar) throws IllegalArgumentException{
+        if(position < 0 || position > size)
+            throw new IllegalArgumentException("There is no position " + position + " in the train!");
+        if(position > 0 || head == null) {
+            if(position > 0)
+                cursor = nodeAt(position - 1);
+            insertAfterCursor(newCar);
+            return;
+        }
+        long start = System.nanoTime();
+        checkCar(newCar);
+        int cursorBefore = journal == null ? -1 : getCursorIndex();
+        TrainCarNode node = newNode(newCar);
+        attach(newCar, node);
+        node.setNext(head);
+        head.setPrev(node);
+        head = node;
+        index.insertChainAfter(null, node, 1);
+
+        long stamp = beginUpdate();
+        addCarTotals(newCar);
+        endUpdate(stamp);
+        cursor = node;
+        metrics.record(TrainMetrics.INSERT, start);
+        if(journal != null)
+            journal.inserted(0, cursorBefore, newCar, false);
+        for(TrainListener listener : listeners)
+            listener.carInserted(newCar);
     }
 
     /**
@@ -134,23 +299,18 @@ public class TrainLinkedList {
      * Postconditions:
      * The TrainCarNode referenced by the cursor has been removed from the train.
      * The cursor now references the next node, or the previous node if no next node exists.
+     * @return
+     *      The TrainCar that was removed.
      * @throws IllegalArgumentException
      *      Thrown when the list is empty.
      */
-    public void removeCursor() throws IllegalArgumentException{
+    public TrainCar removeCursor() throws IllegalArgumentException{
         if(cursor != null) {
-
-            double carLength = cursor.getCar().getCarLength();
-            double carWeight = cursor.getCar().getCarWeight();
-            double prodWeight = 0;
-            double prodValue = 0;
-            boolean dangerous = false;
-            String info = cursor.toString();
-            if(!cursor.getCar().isEmpty()){
-                prodWeight = cursor.getCar().getCarLoad().getWeight();
-                prodValue = cursor.getCar().getCarLoad().getValue();
-                dangerous = cursor.getCar().getCarLoad().isDangerous();
-            }
+            long start = System.nanoTime();
+            TrainCar removed = cursor.getCar();
+            TrainCarNode node = cursor;
+            int position = journal == null ? -1 : index.indexOf(cursor);
+            index.remove(cursor);
 
             if(cursor != head && cursor != tail){
                 TrainCarNode nextNode = cursor.getNext();
@@ -178,21 +338,363 @@ public class TrainLinkedList {
                 tail = null;
             }
 
-            length -= carLength;
-            weight -= carWeight + prodWeight;
-            value -= prodValue;
-            size--;
-            if(dangerous){
-                if(numDangerousCars == 1){
-                    isDangerous = false;
-                }
-                numDangerousCars--;
+            detach(removed);
+            recycle(node);
+            long stamp = beginUpdate();
+            removeCarTotals(removed);
+            endUpdate(stamp);
+            metrics.record(TrainMetrics.REMOVE, start);
+            if(journal != null)
+                journal.removed(position, position, removed, false);
+            for(TrainListener listener : listeners)
+                listener.carRemoved(removed);
+            return removed;
+        }else
+            throw new IllegalArgumentException("The list is currently empty!");
+    }
+
+    /**
+     * Inserts a block of cars into the train after the cursor position, keeping the order they have in the collection.
+     * The cars are linked into a chain of their own first, which is then spliced into the train with a constant amount
+     * of pointer work, and the train totals are updated once for the whole block.
+     * Preconditions:
+     * Every car in the collection has been instantiated and has a length and weight greater than 0.
+     * Postconditions:
+     * The cars have been inserted into the train after the position of the cursor, in order.
+     * All TrainCar objects previously on the train are still on the train, and their order has been preserved.
+     * The cursor now points to the last inserted car. If the collection is empty nothing changes.
+     * @param cars
+     *      The cars to insert.
+     * @throws IllegalArgumentException
+     *      Thrown when the collection or any car in it is null, a car is already on a train or in the collection
+     *      twice, or a car's weight/length are invalid. No car is inserted in that case.
+     */
+    public void insertAllAfterCursor(Collection<TrainCar> cars) throws IllegalArgumentException{
+        long start = System.nanoTime();
+        if(cars == null)
+            throw new IllegalArgumentException("Those cars have not been created!");
+        TrainCarNode[] nodes = new TrainCarNode[cars.size()];
+        int checked = 0;
+        try {
+            for(TrainCar car : cars) {
+                checkCar(car);
+                nodes[checked] = newNode(car);
+                attach(car, nodes[checked]);
+                checked++;
             }
-            System.out.println("Car successfully unlinked, the following car was unlinked:");
-            System.out.println(info +"\n");
+        }catch(IllegalArgumentException e) {
+            for(int i = 0; i < checked; i++) {
+                detach(nodes[i].getCar());
+                recycle(nodes[i]);
+            }
+            throw e;
+        }
+        if(cars.isEmpty())
+            return;
+        int cursorBefore = journal == null ? -1 : getCursorIndex();
 
-        }else
+        TrainCarNode first = null;
+        TrainCarNode last = null;
+        double addedLength = 0;
+        double addedWeight = 0;
+        double addedValue = 0;
+        int addedDangerous = 0;
+        for(TrainCarNode node : nodes) {
+            TrainCar car = node.getCar();
+            if(first == null) {
+                first = node;
+            }else {
+                last.setNext(node);
+                node.setPrev(last);
+            }
+            last = node;
+
+            addedLength += car.getCarLength();
+            addedWeight += car.getCarWeight();
+            if(!car.isEmpty()) {
+                ProductLoad load = car.getCarLoad();
+                addedWeight += load.getWeight();
+                addedValue += load.getValue();
+                if(load.isDangerous())
+                    addedDangerous++;
+                indexLoad(load);
+            }
+        }
+
+        if(head == null) {
+            head = first;
+            tail = last;
+        }else {
+            TrainCarNode after = cursor.getNext();
+            last.setNext(after);
+            if(after != null)
+                after.setPrev(last);
+            else
+                tail = last;
+            cursor.setNext(first);
+            first.setPrev(cursor);
+        }
+        index.insertChainAfter(first == head ? null : cursor, first, cars.size());
+
+        long stamp = beginUpdate();
+        size += cars.size();
+        length += addedLength;
+        weight += addedWeight;
+        value += addedValue;
+        numDangerousCars += addedDangerous;
+        isDangerous = numDangerousCars > 0;
+        endUpdate(stamp);
+        cursor = last;
+        metrics.record(TrainMetrics.INSERT_ALL, start);
+        if(journal != null) {
+            for(int i = 0; i < nodes.length; i++)
+                journal.inserted(cursorBefore + 1 + i, i == 0 ? cursorBefore : -1, nodes[i].getCar(), i > 0);
+        }
+        if(listeners.length > 0) {
+            for(TrainCar car : cars) {
+                for(TrainListener listener : listeners)
+                    listener.carInserted(car);
+            }
+        }
+    }
+
+    /**
+     * Removes the cars at positions from (inclusive) to to (exclusive) from the train. The block is unlinked with a
+     * constant amount of pointer work and the train totals are updated once for the whole block.
+     * Preconditions:
+     * 0 <= from <= to <= size()
+     * Postconditions:
+     * The cars in the range have been removed from the train, and the order of the remaining cars is preserved.
+     * If the cursor referenced a removed car, it now references the car after the range, or the car before the range
+     * if no car follows it.
+     * @param from
+     *      The position of the first car to remove, with 0 being the head of the train.
+     * @param to
+     *      The position after the last car to remove.
+     * @return
+     *      The removed cars, in train order.
+     * @throws IllegalArgumentException
+     *      Thrown when the range is not within the train.
+     */
+    public List<TrainCar> removeRange(int from, int to) throws IllegalArgumentException{
+        if(from < 0 || to > size || from > to)
+            throw new IllegalArgumentException("The range " + from + " to " + to + " is not within the train!");
+        long start = System.nanoTime();
+        ArrayList<TrainCar> removed = new ArrayList<TrainCar>(to - from);
+        if(from == to)
+            return removed;
+
+        TrainCarNode first = nodeAt(from);
+        TrainCarNode last = nodeAt(to - 1);
+        TrainCarNode before = first.getPrev();
+        TrainCarNode after = last.getNext();
+        int cursorIndex = index.indexOf(cursor);
+        index.removeRange(from, to);
+
+        double removedLength = 0;
+        double removedWeight = 0;
+        double removedValue = 0;
+        int removedDangerous = 0;
+        TrainCarNode traverser = first;
+        while(true) {
+            TrainCar car = traverser.getCar();
+            removed.add(car);
+            detach(car);
+            removedLength += car.getCarLength();
+            removedWeight += car.getCarWeight();
+            if(!car.isEmpty()) {
+                ProductLoad load = car.getCarLoad();
+                removedWeight += load.getWeight();
+                removedValue += load.getValue();
+                if(load.isDangerous())
+                    removedDangerous++;
+                unindexLoad(load);
+            }
+            TrainCarNode next = traverser.getNext();
+            recycle(traverser);
+            if(traverser == last)
+                break;
+            traverser = next;
+        }
+
+        if(before != null)
+            before.setNext(after);
+        else
+            head = after;
+        if(after != null)
+            after.setPrev(before);
+        else
+            tail = before;
+        if(cursorIndex >= from && cursorIndex < to)
+            cursor = after != null ? after : before;
+
+        long stamp = beginUpdate();
+        size -= to - from;
+        length -= removedLength;
+        weight -= removedWeight;
+        value -= removedValue;
+        numDangerousCars -= removedDangerous;
+        isDangerous = numDangerousCars > 0;
+        endUpdate(stamp);
+        metrics.record(TrainMetrics.REMOVE_RANGE, start);
+        if(journal != null) {
+            for(int i = 0; i < removed.size(); i++)
+                journal.removed(from, i == 0 ? cursorIndex : -1, removed.get(i), i > 0);
+            journal.moved(-1, getCursorIndex(), true);
+        }
+        fireRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Uncouples the train behind the cursor. The cars after the cursor move, in order, onto a new train, and the car
+     * referenced by the cursor becomes the tail of this train. The moved cars are not walked: the node links are cut in
+     * one place, the TrainIndex is split in O(log n) time, and the totals of the moved cars are read from the sums in
+     * the TrainIndex and subtracted from the totals of this train. The product index of each train is rebuilt the next
+     * time a product is looked up. Listeners of this train are told about each moved car as a removal.
+     * Preconditions:
+     * The list is not empty (cursor is not null).
+     * Postconditions:
+     * This train ends at the car referenced by the cursor, and the cursor has not moved.
+     * The new train holds the cars that followed the cursor, in their order, and its cursor references its head.
+     * @return
+     *      The new train, which is empty if the cursor was at the tail.
+     * @throws IllegalArgumentException
+     *      Thrown when the list is empty.
+     */
+    public TrainLinkedList splitAtCursor() throws IllegalArgumentException{
+        if(cursor == null)
             throw new IllegalArgumentException("The list is currently empty!");
+        long start = System.nanoTime();
+        TrainLinkedList other = new TrainLinkedList();
+        TrainCarNode first = cursor.getNext();
+        if(first == null)
+            return other;
+
+        int kept = index.indexOf(cursor) + 1;
+        index.splitInto(kept, other.index);
+        cursor.setNext(null);
+        first.setPrev(null);
+        other.head = first;
+        other.tail = tail;
+        other.cursor = first;
+        tail = cursor;
+
+        other.size = size - kept;
+        other.length = other.index.total(TrainIndex.LENGTH);
+        other.weight = other.index.total(TrainIndex.WEIGHT);
+        other.value = other.index.total(TrainIndex.VALUE);
+        other.numDangerousCars = other.index.dangerCount();
+        other.isDangerous = other.numDangerousCars > 0;
+        other.productsStale = true;
+
+        long stamp = beginUpdate();
+        size = kept;
+        length -= other.length;
+        weight -= other.weight;
+        value -= other.value;
+        numDangerousCars -= other.numDangerousCars;
+        isDangerous = numDangerousCars > 0;
+        productsStale = true;
+        endUpdate(stamp);
+        metrics.record(TrainMetrics.SPLIT, start);
+        if(journal != null)
+            journal.clear();
+        if(listeners.length > 0) {
+            for(TrainCarNode node = first; node != null; node = node.getNext()) {
+                for(TrainListener listener : listeners)
+                    listener.carRemoved(node.getCar());
+            }
+        }
+        return other;
+    }
+
+    /**
+     * Couples another train to the tail of this one. The cars of the other train move, in order, onto this train and
+     * the other train is left empty. The cars are not walked: the node links are joined in one place, the TrainIndexes
+     * are merged in O(log n) time, the totals of the other train are added to the totals of this one, and the product
+     * indexes are merged one product at a time. Listeners of the other train are told about each moved car as a
+     * removal, and listeners of this train as an insertion.
+     * Postconditions:
+     * This train holds its own cars followed by the cars of the other train. The cursor has not moved, or references
+     * the head if this train was empty.
+     * The other train is empty.
+     * @param other
+     *      The train to couple on behind this one.
+     * @throws IllegalArgumentException
+     *      Thrown when the other train is null or is this train.
+     */
+    public void append(TrainLinkedList other) throws IllegalArgumentException{
+        if(other == null)
+            throw new IllegalArgumentException("That train has not been created!");
+        if(other == this)
+            throw new IllegalArgumentException("A train cannot be coupled to itself!");
+        long start = System.nanoTime();
+        TrainCarNode first = other.head;
+        if(first == null)
+            return;
+
+        if(head == null) {
+            head = first;
+            cursor = first;
+        }else {
+            tail.setNext(first);
+            first.setPrev(tail);
+        }
+        tail = other.tail;
+        index.append(other.index);
+        if(productsStale || other.productsStale) {
+            productsStale = true;
+        }else {
+            ProductTotal[] moved = other.products;
+            if(moved.length > products.length)
+                products = Arrays.copyOf(products, moved.length);
+            for(int id = 0; id < moved.length; id++) {
+                if(moved[id] == null)
+                    continue;
+                if(products[id] == null)
+                    products[id] = new ProductTotal();
+                products[id].add(moved[id]);
+            }
+        }
+
+        long stamp = beginUpdate();
+        size += other.size;
+        length += other.length;
+        weight += other.weight;
+        value += other.value;
+        numDangerousCars += other.numDangerousCars;
+        isDangerous = numDangerousCars > 0;
+        endUpdate(stamp);
+
+        long otherStamp = other.beginUpdate();
+        other.head = null;
+        other.tail = null;
+        other.cursor = null;
+        other.size = 0;
+        other.length = 0;
+        other.weight = 0;
+        other.value = 0;
+        other.numDangerousCars = 0;
+        other.isDangerous = false;
+        other.products = new ProductTotal[16];
+        other.productsStale = false;
+        other.endUpdate(otherStamp);
+        metrics.record(TrainMetrics.APPEND, start);
+        if(journal != null)
+            journal.clear();
+        if(other.journal != null)
+            other.journal.clear();
+
+        if(listeners.length > 0 || other.listeners.length > 0) {
+            for(TrainCarNode node = first; node != null; node = node.getNext()) {
+                TrainCar car = node.getCar();
+                for(TrainListener listener : other.listeners)
+                    listener.carRemoved(car);
+                for(TrainListener listener : listeners)
+                    listener.carInserted(car);
+            }
+        }
     }
 
     /**
@@ -203,15 +705,20 @@ public class TrainLinkedList {
      * The cursor has been advanced to the next TrainCarNode, or has remained at the tail of the list.
      */
     public void cursorForward() {
-        if (cursor != null) {
-            if (cursor != tail) {
-                cursor = cursor.getNext();
-                System.out.println("Cursor moved forward successfully!");
-            }else
-                System.out.println("The cursor is at the end of the list.");
-
-        }else
-            System.out.println("No cars are in the train!");
+        boolean moved = false;
+        if (cursor != null && cursor != tail) {
+            cursor = cursor.getNext();
+            moved = true;
+            if (journal != null) {
+                int position = index.indexOf(cursor);
+                journal.moved(position - 1, position, false);
+            }
+        }
+        if (listeners.length > 0) {
+            TrainCar car = cursor == null ? null : cursor.getCar();
+            for (TrainListener listener : listeners)
+                listener.cursorMoved(car, true, moved);
+        }
     }
 
     /**
@@ -222,43 +729,612 @@ public class TrainLinkedList {
      * The cursor has been moved back to the previous TrainCarNode, or has remained at the head of the list.
      */
     public void cursorBackward(){
-        if(cursor != null) {
-            if (cursor != head) {
-                cursor = cursor.getPrev();
-                System.out.println("Cursor moved backwards successfully!");
-            }else
-                System.out.println("The cursor is at the beginning of the list.");
-        }else
-            System.out.println("No cars are in the train!");
+        boolean moved = false;
+        if (cursor != null && cursor != head) {
+            cursor = cursor.getPrev();
+            moved = true;
+            if (journal != null) {
+                int position = index.indexOf(cursor);
+                journal.moved(position + 1, position, false);
+            }
+        }
+        if (listeners.length > 0) {
+            TrainCar car = cursor == null ? null : cursor.getCar();
+            for (TrainListener listener : listeners)
+                listener.cursorMoved(car, false, moved);
+        }
     }
 
     /**
-     * Removes all dangerous cars from the train, maintaining the order of the cars in the train.
+     * Moves the cursor directly to the car at the given position, without printing anything. The position is found
+     * through the TrainIndex, so the move takes O(log n) time no matter how far the cursor travels.
+     * Preconditions:
+     * 0 <= position < size()
+     * Postconditions:
+     * The cursor references the car at the given position.
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public void seek(int position) throws IllegalArgumentException{
+        TrainCarNode node = nodeAt(position);
+        if(journal != null && node != cursor)
+            journal.moved(getCursorIndex(), position, false);
+        cursor = node;
+    }
+
+    /**
+     * Returns the car at the given position without moving the cursor.
+     * Preconditions:
+     * 0 <= position < size()
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      The TrainCar at that position.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    public TrainCar getCar(int position) throws IllegalArgumentException{
+        return nodeAt(position).getCar();
+    }
+
+    /**
+     * Returns the position of the cursor in the train.
+     * @return
+     *      The position of the car referenced by the cursor, with 0 being the head of the train, or -1 if the train
+     *      is empty.
+     */
+    public int getCursorIndex() {
+        if(cursor == null)
+            return -1;
+        return index.indexOf(cursor);
+    }
+
+    /**
+     * Returns the distance from the head of the train to the front of a car, found in O(log n) time.
+     * Preconditions:
+     * 0 <= position <= size()
+     * @param position
+     *      The position of the car, with 0 being the head of the train. size() gives the length of the whole train.
+     * @return
+     *      The summed length of the cars before that position, in meters.
+     * @throws IllegalArgumentException
+     *      Thrown when the position is not within the train.
+     */
+    public double getLengthBefore(int position) throws IllegalArgumentException{
+        return rangeSum(0, position, TrainIndex.LENGTH);
+    }
+
+    /**
+     * Returns the weight of the cars ahead of a position, including their loads, found in O(log n) time.
+     * Preconditions:
+     * 0 <= position <= size()
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      The summed weight of the cars before that position and their loads, in tons.
+     * @throws IllegalArgumentException
+     *      Thrown when the position is not within the train.
+     */
+    public double getWeightBefore(int position) throws IllegalArgumentException{
+        return rangeSum(0, position, TrainIndex.WEIGHT);
+    }
+
+    /**
+     * Returns the value of the loads ahead of a position, found in O(log n) time.
+     * Preconditions:
+     * 0 <= position <= size()
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      The summed value of the loads on the cars before that position, in dollars.
+     * @throws IllegalArgumentException
+     *      Thrown when the position is not within the train.
+     */
+    public double getValueBefore(int position) throws IllegalArgumentException{
+        return rangeSum(0, position, TrainIndex.VALUE);
+    }
+
+    /**
+     * Returns the length of a run of cars, found in O(log n) time.
+     * Preconditions:
+     * 0 <= from <= to <= size()
+     * @param from
+     *      The position of the first car in the run.
+     * @param to
+     *      The position after the last car in the run.
+     * @return
+     *      The summed length of the cars at positions from to to - 1, in meters.
+     * @throws IllegalArgumentException
+     *      Thrown when the range is not within the train.
+     */
+    public double getLengthBetween(int from, int to) throws IllegalArgumentException{
+        return rangeSum(from, to, TrainIndex.LENGTH);
+    }
+
+    /**
+     * Returns the weight of a run of cars including their loads, found in O(log n) time. The weight behind the car at
+     * position k, for example, is getWeightBetween(k + 1, size()).
+     * Preconditions:
+     * 0 <= from <= to <= size()
+     * @param from
+     *      The position of the first car in the run.
+     * @param to
+     *      The position after the last car in the run.
+     * @return
+     *      The summed weight of the cars at positions from to to - 1 and their loads, in tons.
+     * @throws IllegalArgumentException
+     *      Thrown when the range is not within the train.
+     */
+    public double getWeightBetween(int from, int to) throws IllegalArgumentException{
+        return rangeSum(from, to, TrainIndex.WEIGHT);
+    }
+
+    /**
+     * Returns the value of the loads on a run of cars, found in O(log n) time.
+     * Preconditions:
+     * 0 <= from <= to <= size()
+     * @param from
+     *      The position of the first car in the run.
+     * @param to
+     *      The position after the last car in the run.
+     * @return
+     *      The summed value of the loads on the cars at positions from to to - 1, in dollars.
+     * @throws IllegalArgumentException
+     *      Thrown when the range is not within the train.
+     */
+    public double getValueBetween(int from, int to) throws IllegalArgumentException{
+        return rangeSum(from, to, TrainIndex.VALUE);
+    }
+
+    /**
+     * Counts the dangerous cars ahead of a position, found in O(log n) time.
+     * Preconditions:
+     * 0 <= position <= size()
+     * @param position
+     *      The position of the car, with 0 being the head of the train.
+     * @return
+     *      The number of dangerous cars before that position.
+     * @throws IllegalArgumentException
+     *      Thrown when the position is not within the train.
+     */
+    public int getDangerousCarsBefore(int position) throws IllegalArgumentException{
+        if(position < 0 || position > size)
+            throw new IllegalArgumentException("There is no position " + position + " in the train!");
+        return index.dangerCountBefore(position);
+    }
+
+    /**
+     * Finds where a dangerous car is on the train, counting only the dangerous cars, in O(log n) time. Going through
+     * k from 0 to getNumDangerousCars() - 1 visits every dangerous car without walking the rest of the train.
+     * Preconditions:
+     * 0 <= k < getNumDangerousCars()
+     * @param k
+     *      The number of dangerous cars ahead of the one being found.
+     * @return
+     *      The position of the dangerous car, with 0 being the head of the train.
+     * @throws IllegalArgumentException
+     *      Thrown when the train does not have that many dangerous cars.
+     */
+    public int getDangerousCarPosition(int k) throws IllegalArgumentException{
+        if(k < 0 || k >= index.dangerCount())
+            throw new IllegalArgumentException("There is no dangerous car number " + k + " on the train!");
+        return index.dangerousPosition(k);
+    }
+
+    /**
+     * Finds the dangerous car nearest to the cursor, counting in cars, in O(log n) time. When a dangerous car ahead of
+     * the cursor and one behind it are equally near, the one ahead (nearer the head of the train) is chosen.
+     * @return
+     *      The position of the nearest dangerous car, which is the cursor's own position if its car is dangerous, or
+     *      -1 if there is no dangerous car on the train.
+     */
+    public int findNearestDangerousCar() {
+        int dangerous = index.dangerCount();
+        if(cursor == null || dangerous == 0)
+            return -1;
+        int position = index.indexOf(cursor);
+        int ahead = index.dangerCountBefore(position);
+        TrainCar car = cursor.getCar();
+        if(!car.isEmpty() && car.getCarLoad().isDangerous())
+            return position;
+        int before = ahead > 0 ? index.dangerousPosition(ahead - 1) : -1;
+        int after = ahead < dangerous ? index.dangerousPosition(ahead) : -1;
+        if(before < 0)
+            return after;
+        if(after < 0 || position - before <= after - position)
+            return before;
+        return after;
+    }
+
+    /**
+     * Lists the dangerous cars that are at least partly within a distance of the locomotive, which pulls the train
+     * from its head. The cars are found through the TrainIndex in O((k + 1) log n) time for k such cars, without
+     * walking the train.
+     * @param meters
+     *      The distance from the head of the train, in meters.
+     * @return
+     *      The dangerous cars whose front is less than that distance from the head of the train, in train order.
+     * @throws IllegalArgumentException
+     *      Thrown when the distance is negative.
+     */
+    public List<TrainCar> getDangerousCarsWithin(double meters) throws IllegalArgumentException{
+        if(meters < 0)
+            throw new IllegalArgumentException("The distance cannot be negative!");
+        int k = index.dangerCountBefore(index.countStartingBefore(meters));
+        ArrayList<TrainCar> found = new ArrayList<TrainCar>(k);
+        for(int j = 0; j < k; j++)
+            found.add(index.get(index.dangerousPosition(j)).getCar());
+        return found;
+    }
+
+    /**
+     * Sums a measure over a run of cars as the difference of two prefix sums of the TrainIndex.
+     * @param from
+     *      The position of the first car in the run.
+     * @param to
+     *      The position after the last car in the run.
+     * @param measure
+     *      TrainIndex.LENGTH, TrainIndex.WEIGHT or TrainIndex.VALUE.
+     * @return
+     *      The sum.
+     * @throws IllegalArgumentException
+     *      Thrown when the range is not within the train.
+     */
+    private double rangeSum(int from, int to, int measure) throws IllegalArgumentException{
+        if(from < 0 || to > size || from > to)
+            throw new IllegalArgumentException("The range " + from + " to " + to + " is not within the train!");
+        if(from == to)
+            return 0;
+        double sum = index.prefixSum(to, measure);
+        if(from > 0)
+            sum -= index.prefixSum(from, measure);
+        return sum;
+    }
+
+    /**
+     * Looks up the node at a position through the TrainIndex.
+     * @param position
+     *      The position of the node, with 0 being the head of the train.
+     * @return
+     *      The node at that position.
+     * @throws IllegalArgumentException
+     *      Thrown when there is no car at that position.
+     */
+    private TrainCarNode nodeAt(int position) throws IllegalArgumentException{
+        if(position < 0 || position >= size)
+            throw new IllegalArgumentException("There is no car at position " + position + "!");
+        return index.get(position);
+    }
+
+    /**
+     * Removes all dangerous cars from the train, maintaining the order of the cars in the train. Listeners are told
+     * about each removed car and then about the purge as a whole.
      * Postconditions:
      * All dangerous cars have been removed from this train.
      * The order of all non-dangerous cars must be maintained upon the completion of this method.
+     * If the cursor referenced a removed car, it now references the next remaining car, or the previous remaining car
+     * if no car follows it.
+     * @return
+     *      The number of cars that were removed.
      */
-    public void removeDangerousCars(){
-        if(isDangerous){
-            if(head != null && tail != null){
-                TrainCarNode traverser = head;
-                do {
-                    if(!traverser.getCar().isEmpty()) {
-                        if (traverser.getCar().getCarLoad().isDangerous()) {
-                            cursor = traverser;
-                            removeCursor();
-                            traverser = cursor;
-                            if (traverser == tail)
-                                break;
-                            continue;
-                        }
-                    }
-                    traverser = traverser.getNext();
-                }while(traverser != null);
-                System.out.println("Dangerous cars have been removed from the train");
+    public int removeDangerousCars(){
+        int count = extractDangerousCars().size();
+        for(TrainListener listener : listeners)
+            listener.dangerousCarsRemoved(count);
+        return count;
+    }
+
+    /**
+     * Unlinks every dangerous car from the train. When few of the cars are dangerous they are found through the
+     * TrainIndex and unlinked one at a time in O(k log n) time for k dangerous cars, without walking the rest of the
+     * train; otherwise the train is swept in a single pass from the head. Listeners are told about each removed car.
+     * Postconditions:
+     * All dangerous cars have been removed from this train, and the order of the remaining cars is preserved.
+     * If the cursor referenced a removed car, it now references the next remaining car, or the previous remaining car
+     * if no car follows it.
+     * @return
+     *      The removed cars, in the order they had on the train.
+     */
+    public List<TrainCar> extractDangerousCars(){
+        long start = System.nanoTime();
+        ArrayList<TrainCar> removed = new ArrayList<TrainCar>(numDangerousCars);
+        if(numDangerousCars == 0) {
+            metrics.record(TrainMetrics.REMOVE_DANGEROUS, start);
+            return removed;
+        }
+
+        int cursorBefore = journal == null ? -1 : getCursorIndex();
+        if(index.dangerCount() < size / SWEEP_RATIO)
+            unlinkDangerousCars(removed, cursorBefore);
+        else
+            sweepDangerousCars(removed, cursorBefore);
+        metrics.record(TrainMetrics.REMOVE_DANGEROUS, start);
+        if(journal != null)
+            journal.moved(-1, getCursorIndex(), true);
+        fireRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Unlinks the dangerous cars found through the TrainIndex one at a time, taking each out of the TrainIndex in
+     * O(log n) time, and updates the train totals once at the end.
+     * @param removed
+     *      The list the removed cars are added to, in train order.
+     * @param cursorBefore
+     *      The position of the cursor before the removal, recorded with the first removed car if there is a journal.
+     */
+    private void unlinkDangerousCars(List<TrainCar> removed, int cursorBefore) {
+        ArrayList<TrainCarNode> nodes = new ArrayList<TrainCarNode>(index.dangerCount());
+        index.collectDangerous(nodes);
+        double removedLength = 0;
+        double removedWeight = 0;
+        double removedValue = 0;
+        for(TrainCarNode node : nodes) {
+            TrainCar car = node.getCar();
+            if(journal != null)
+                journal.removed(index.indexOf(node), removed.isEmpty() ? cursorBefore : -1, car, !removed.isEmpty());
+            index.remove(node);
+            TrainCarNode prevNode = node.getPrev();
+            TrainCarNode nextNode = node.getNext();
+            if(prevNode == null)
+                head = nextNode;
+            else
+                prevNode.setNext(nextNode);
+            if(nextNode == null)
+                tail = prevNode;
+            else
+                nextNode.setPrev(prevNode);
+            if(node == cursor)
+                cursor = nextNode != null ? nextNode : prevNode;
+
+            removed.add(car);
+            detach(car);
+            removedLength += car.getCarLength();
+            removedWeight += car.getCarWeight() + car.getCarLoad().getWeight();
+            removedValue += car.getCarLoad().getValue();
+            unindexLoad(car.getCarLoad());
+            recycle(node);
+        }
+
+        long stamp = beginUpdate();
+        size -= removed.size();
+        length -= removedLength;
+        weight -= removedWeight;
+        value -= removedValue;
+        numDangerousCars = 0;
+        isDangerous = false;
+        endUpdate(stamp);
+    }
+
+    /**
+     * Unlinks every dangerous car in a single pass from the head. The train totals are updated once at the end and
+     * the TrainIndex is rebuilt from the remaining cars in O(n) time.
+     * @param removed
+     *      The list the removed cars are added to, in train order.
+     * @param cursorBefore
+     *      The position of the cursor before the removal, recorded with the first removed car if there is a journal.
+     */
+    private void sweepDangerousCars(List<TrainCar> removed, int cursorBefore) {
+        int position = 0;
+        boolean cursorRemoved = false;
+        double removedLength = 0;
+        double removedWeight = 0;
+        double removedValue = 0;
+        TrainCarNode kept = null;
+        TrainCarNode traverser = head;
+        head = null;
+        while(traverser != null) {
+            TrainCarNode next = traverser.getNext();
+            TrainCar car = traverser.getCar();
+            if(!car.isEmpty() && car.getCarLoad().isDangerous()) {
+                if(journal != null)
+                    journal.removed(position - removed.size(), removed.isEmpty() ? cursorBefore : -1, car,
+                            !removed.isEmpty());
+                removed.add(car);
+                detach(car);
+                removedLength += car.getCarLength();
+                removedWeight += car.getCarWeight() + car.getCarLoad().getWeight();
+                removedValue += car.getCarLoad().getValue();
+                unindexLoad(car.getCarLoad());
+                if(traverser == cursor)
+                    cursorRemoved = true;
+                recycle(traverser);
+                position++;
+            }else {
+                if(kept == null)
+                    head = traverser;
+                else
+                    kept.setNext(traverser);
+                traverser.setPrev(kept);
+                kept = traverser;
+                if(cursorRemoved) {
+                    cursor = traverser;
+                    cursorRemoved = false;
+                }
+                position++;
             }
-        }else
-            System.out.println("The train has no dangerous cars in it!");
+            traverser = next;
+        }
+        if(kept != null)
+            kept.setNext(null);
+        tail = kept;
+        if(cursorRemoved)
+            cursor = tail;
+
+        long stamp = beginUpdate();
+        size -= removed.size();
+        length -= removedLength;
+        weight -= removedWeight;
+        value -= removedValue;
+        numDangerousCars = 0;
+        isDangerous = false;
+        endUpdate(stamp);
+        index.clear();
+        if(head != null)
+            index.insertChainAfter(null, head, size);
+        metrics.recordScan(position);
+    }
+
+    /**
+     * Relinks the nodes of the train into a new order, one O(1) splice per car, and rebuilds the TrainIndex from the
+     * new order in O(n) time. The cursor stays on the same car and the totals do not change.
+     * Precondition:
+     *      The list holds every car of this train exactly once.
+     * @param order
+     *      The cars of the train in their new order.
+     */
+    void rearrange(List<TrainCar> order) {
+        TrainCarNode prev = null;
+        for(TrainCar car : order) {
+            TrainCarNode node = car.node;
+            node.setPrev(prev);
+            if(prev == null)
+                head = node;
+            else
+                prev.setNext(node);
+            prev = node;
+        }
+        if(prev != null)
+            prev.setNext(null);
+        tail = prev;
+        index.clear();
+        if(head != null)
+            index.insertChainAfter(null, head, size);
+        if(journal != null)
+            journal.clear();
+    }
+
+    /**
+     * Registers a listener to be told about the train's events.
+     * @param listener
+     *      The listener to add.
+     * @throws IllegalArgumentException
+     *      Thrown when the listener is null.
+     */
+    public void addListener(TrainListener listener) throws IllegalArgumentException{
+        if(listener == null)
+            throw new IllegalArgumentException("The listener has not been created!");
+        TrainListener[] grown = new TrainListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Stops a listener from being told about the train's events.
+     * @param listener
+     *      The listener to remove.
+     * @return
+     *      True if the listener was registered, false otherwise.
+     */
+    public boolean removeListener(TrainListener listener) {
+        for(int i = 0; i < listeners.length; i++) {
+            if(listeners[i] == listener) {
+                TrainListener[] shrunk = new TrainListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts recording the changes made to the train in a journal, so that they can be undone and redone. A journal
+     * started on a train that already has cars can undo the changes it records, but cannot rebuild the train.
+     * @param newJournal
+     *      The journal, or null to stop recording.
+     * @throws IllegalArgumentException
+     *      Thrown when the journal is already recording another train.
+     */
+    public void setJournal(TrainJournal newJournal) throws IllegalArgumentException{
+        if(newJournal != null && newJournal.getTrain() != null && newJournal.getTrain() != this)
+            throw new IllegalArgumentException("That journal is already recording another train!");
+        if(journal != null)
+            journal.attach(null);
+        journal = newJournal;
+        if(newJournal != null)
+            newJournal.attach(this);
+    }
+
+    /**
+     * @return
+     *      Returns the journal recording the train, or null.
+     */
+    public TrainJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return
+     *      Returns the metrics recording how the train is used, which can be read at any time or registered with JMX.
+     */
+    public TrainMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets how many nodes of removed cars the train keeps for reuse by later inserts. Once the pool holds as many nodes
+     * as are removed between inserts, inserting and removing cars allocates nothing. Nodes beyond the new capacity are
+     * dropped.
+     * @param capacity
+     *      The number of nodes to keep, or 0 to keep none.
+     * @throws IllegalArgumentException
+     *      Thrown when the capacity is negative.
+     */
+    public void setNodePoolCapacity(int capacity) throws IllegalArgumentException{
+        if(capacity < 0)
+            throw new IllegalArgumentException("The capacity cannot be negative!");
+        nodePoolCapacity = capacity;
+        while(freeNodeCount > capacity) {
+            TrainCarNode node = freeNodes;
+            freeNodes = node.getNext();
+            node.setNext(null);
+            freeNodeCount--;
+        }
+    }
+
+    /**
+     * @return
+     *      Returns how many nodes of removed cars the train keeps for reuse.
+     */
+    public int getNodePoolCapacity() {
+        return nodePoolCapacity;
+    }
+
+    /**
+     * @return
+     *      Returns how many nodes are waiting in the pool to be reused.
+     */
+    public int getPooledNodeCount() {
+        return freeNodeCount;
+    }
+
+    /**
+     * Returns how many nodes the train has allocated since it was created. Inserts that reuse a pooled node are not
+     * counted, so in a steady run of inserts and removals this number stops growing.
+     * @return
+     *      The number of nodes allocated.
+     */
+    public long getNodesAllocated() {
+        return nodesAllocated;
+    }
+
+    /**
+     * Tells every listener about a block of removed cars.
+     * @param removed
+     *      The removed cars, in train order.
+     */
+    private void fireRemoved(List<TrainCar> removed) {
+        if(listeners.length == 0)
+            return;
+        for(TrainCar car : removed) {
+            for(TrainListener listener : listeners)
+                listener.carRemoved(car);
+        }
     }
 
     /**
@@ -266,91 +1342,357 @@ public class TrainLinkedList {
      * and load dangerousness for all of the car on the train.
      */
     public void printManifest(){
-        String s = "Num   Length (m)    Weight (t)  |    Name      Weight (t)     Value ($)   Dangerous\n"
-                + "-----------------------------------------------------------------------------------";
-        System.out.println(s);
-        if(head != null) {
-            TrainCarNode traverser = head;
-            int counter = 1;
-            do {
-                double tLength = 0;
-                double tWeight = 0;
-                String name = "EMPTY";
-                double loadWeight = 0;
-                double tValue = 0;
-                String dangerousString = "NO";
-                boolean tDangerous = false;
-                String cursorPos = "";
-
-                if(counter != 1 && traverser != tail)
-                    traverser = traverser.getNext();
-                tLength = traverser.getCar().getCarLength();
-                tWeight = traverser.getCar().getCarWeight();
-
-                if(!traverser.getCar().isEmpty()) {
-                    name = traverser.getCar().getCarLoad().getName();
-                    loadWeight = traverser.getCar().getCarLoad().getWeight();
-                    tValue = traverser.getCar().getCarLoad().getValue();
-                    tDangerous = traverser.getCar().getCarLoad().isDangerous();
-
-                    if (tDangerous) {
-                        dangerousString = "YES";
-                    } else
-                        dangerousString = "NO";
+        try {
+            writeManifest(System.out);
+        }catch(IOException e) {
+            // PrintStream reports errors through checkError() rather than by throwing.
+        }
+    }
 
-                }
+    /**
+     * Writes the manifest table printed by printManifest to any Appendable, such as a Writer or a StringBuilder. The
+     * rows are streamed through a ManifestWriter, so the whole table is never held in memory. Unlike snapshot, the
+     * manifest reads the live cars, so the train must not be changed by another thread while it is written.
+     * @param out
+     *      The destination of the manifest.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeManifest(Appendable out) throws IOException {
+        ManifestWriter writer = new ManifestWriter(out);
+        writeManifest(writer);
+        writer.flush();
+    }
 
-                if(traverser == cursor)
-                    cursorPos = "<- [Cursor]";
-                String line = String.format("%-6d%-14.1f%-17.1f%-10s%-15.1f%-12.2f%-16s%-6s", counter, tLength, tWeight, name, loadWeight,
-                        tValue, dangerousString, cursorPos);
-                System.out.println(line);
-                cursorPos = "";
-                counter++;
-            } while (traverser != tail);
+    /**
+     * Writes the manifest table through a ManifestWriter, one row per car from the head of the train. The writer is
+     * not flushed, so several manifests can share one writer.
+     * @param writer
+     *      The writer the manifest goes through.
+     * @throws IOException
+     *      Thrown when the destination cannot be written to.
+     */
+    public void writeManifest(ManifestWriter writer) throws IOException {
+        writer.writeHeader();
+        int counter = 1;
+        for(TrainCarNode traverser = head; traverser != null; traverser = traverser.getNext()) {
+            writer.writeRow(counter, traverser.getCar(), traverser == cursor);
+            counter++;
         }
-
+        metrics.recordScan(counter - 1);
     }
 
     /**
-     * Searches the list for all ProductLoad objects with the indicated name and sums together their weight and value
-     * (Also keeps track of whether the product is dangerous or not), then prints a single ProductLoad record to the console.
+     * Looks up all ProductLoad objects with the indicated name in the product index, which holds their summed weight
+     * and value (Also keeps track of whether the product is dangerous or not), then prints a single ProductLoad record
+     * to System.out.
      * @param name
      *      The name of the product being searched for
      * @throws IllegalArgumentException
      *      Thrown when the product name produces no results.
      */
     public void findProduct(String name) throws IllegalArgumentException{
-        TrainCarNode traverser = head;
+        findProduct(name, System.out);
+    }
 
-        double prodWeight = 0;
-        double prodValue = 0;
-        String dangerousString = "NO";
-        String line = "";
-        boolean found = false;
-        while(traverser != null){
-            if(!traverser.getCar().isEmpty()) {
-                if (traverser.getCar().getCarLoad().getName().equalsIgnoreCase(name)) {
-                    prodWeight += traverser.getCar().getCarLoad().getWeight();
-                    prodValue += traverser.getCar().getCarLoad().getValue();
-                    if (traverser.getCar().getCarLoad().isDangerous())
-                        dangerousString = "YES";
-                    found = true;
-                }
-                traverser = traverser.getNext();
-            }
-        }
-        if(found) {
-            System.out.println("The following products were found: ");
-            System.out.print("Name      Weight (t)     Value ($)   Dangerous\n");
-            System.out.print("----------------------------------------------\n");
-            line = String.format("%-10s%-15.1f%-12.2f%-16s", name, prodWeight,
-                    prodValue, dangerousString);
-            System.out.println(line);
-        }else
+    /**
+     * Looks up all ProductLoad objects with the indicated name in the product index, then writes a single ProductLoad
+     * record with their summed weight and value, and whether the product is dangerous, to the given PrintStream.
+     * @param name
+     *      The name of the product being searched for
+     * @param out
+     *      The stream the record is printed to.
+     * @throws IllegalArgumentException
+     *      Thrown when the product name produces no results.
+     */
+    public void findProduct(String name, PrintStream out) throws IllegalArgumentException{
+        ProductLoad found = getProductTotal(name);
+        if(found != null)
+            ManifestWriter.printProduct(out, name, found);
+        else
             throw new IllegalArgumentException("No product with that name was found!");
     }
 
+    /**
+     * Looks up the combined weight and value of every load on the train with the indicated name, ignoring case. The
+     * totals are kept up to date as cars and loads are added and removed, so the lookup does not walk the train.
+     * @param name
+     *      The name of the product being searched for.
+     * @return
+     *      A single ProductLoad record holding the summed weight and value of the product, which is dangerous if any
+     *      of the loads are dangerous, or null if no load with that name is on the train.
+     */
+    public ProductLoad getProductTotal(String name) {
+        if(name == null)
+            return null;
+        long start = System.nanoTime();
+        if(productsStale)
+            rebuildProducts();
+        int id = ProductCatalog.find(name);
+        ProductTotal total = id < 0 || id >= products.length ? null : products[id];
+        metrics.record(TrainMetrics.FIND_PRODUCT, start);
+        if(total == null || total.getCount() == 0)
+            return null;
+        return new ProductLoad(name, total.getWeight(), total.getValue(), total.isDangerous());
+    }
+
+    /**
+     * Checks that a car may be placed on the train.
+     * @param car
+     *      The car being placed on the train.
+     * @throws IllegalArgumentException
+     *      Thrown when the car is null or already on a train, or its weight/length are not greater than 0.
+     */
+    private void checkCar(TrainCar car) throws IllegalArgumentException{
+        if(car == null)
+            throw new IllegalArgumentException("That car has not been created!");
+        if(car.node != null || car.sharedNode != null)
+            throw new IllegalArgumentException("That car is already on a train!");
+        if(!(car.getCarLength() > 0) || !(car.getCarWeight() > 0))
+            throw new IllegalArgumentException("Weight/length values must be greater than 0!");
+    }
+
+    /**
+     * Takes a node for a car from the pool of free nodes, or allocates one if the pool is empty.
+     * @param car
+     *      The car the node will hold.
+     * @return
+     *      The node.
+     */
+    private TrainCarNode newNode(TrainCar car) {
+        TrainCarNode node = freeNodes;
+        if(node == null) {
+            nodesAllocated++;
+            return new TrainCarNode(car);
+        }
+        freeNodes = node.getNext();
+        freeNodeCount--;
+        node.setNext(null);
+        node.setCar(car);
+        return node;
+    }
+
+    /**
+     * Clears a node that has left the train and keeps it in the pool of free nodes, unless the pool is full. The
+     * TrainIndex gives the node fresh tree links and a fresh priority when it is used again.
+     * @param node
+     *      The node, which must no longer be linked into the train or the TrainIndex.
+     */
+    private void recycle(TrainCarNode node) {
+        node.setCar(null);
+        node.setPrev(null);
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+        node.owner = null;
+        if(freeNodeCount < nodePoolCapacity) {
+            node.setNext(freeNodes);
+            freeNodes = node;
+            freeNodeCount++;
+        }else {
+            node.setNext(null);
+        }
+    }
+
+    /**
+     * Records the node a car is in, so that changes to its load reach the train holding the node.
+     * @param car
+     *      The car.
+     * @param node
+     *      The node holding it.
+     */
+    private static void attach(TrainCar car, TrainCarNode node) {
+        car.node = node;
+    }
+
+    /**
+     * Records that a car has left the train.
+     * @param car
+     *      The car.
+     */
+    private static void detach(TrainCar car) {
+        car.node = null;
+    }
+
+    /**
+     * Adds a car, and the load on it if there is one, to the running totals of the train.
+     * @param car
+     *      The car that was placed on the train.
+     */
+    private void addCarTotals(TrainCar car) {
+        length += car.getCarLength();
+        weight += car.getCarWeight();
+        size++;
+        if(!car.isEmpty())
+            addLoadTotals(car.getCarLoad());
+    }
+
+    /**
+     * Takes a car, and the load on it if there is one, out of the running totals of the train.
+     * @param car
+     *      The car that was taken off the train.
+     */
+    private void removeCarTotals(TrainCar car) {
+        length -= car.getCarLength();
+        weight -= car.getCarWeight();
+        size--;
+        if(!car.isEmpty())
+            removeLoadTotals(car.getCarLoad());
+    }
+
+    /**
+     * Adds a load to the weight, value and dangerous totals of the train and to its product index.
+     * @param load
+     *      The load that was placed on the train.
+     */
+    private void addLoadTotals(ProductLoad load) {
+        weight += load.getWeight();
+        value += load.getValue();
+        if(load.isDangerous()) {
+            numDangerousCars++;
+            isDangerous = true;
+        }
+        indexLoad(load);
+    }
+
+    /**
+     * Takes a load out of the weight, value and dangerous totals of the train and out of its product index.
+     * @param load
+     *      The load that was taken off the train.
+     */
+    private void removeLoadTotals(ProductLoad load) {
+        weight -= load.getWeight();
+        value -= load.getValue();
+        if(load.isDangerous()) {
+            numDangerousCars--;
+            isDangerous = numDangerousCars > 0;
+        }
+        unindexLoad(load);
+    }
+
+    /**
+     * Adds a load to the product index only. The index is an array indexed by ProductCatalog id.
+     * @param load
+     *      The load that was placed on the train.
+     */
+    private void indexLoad(ProductLoad load) {
+        if(productsStale)
+            return;
+        int id = load.getProductId();
+        if(id >= products.length)
+            products = Arrays.copyOf(products, Math.max(id + 1, products.length * 2));
+        ProductTotal total = products[id];
+        if(total == null) {
+            total = new ProductTotal();
+            products[id] = total;
+        }
+        total.add(load);
+    }
+
+    /**
+     * Takes a load out of the product index only. The record of a product is kept when its last load leaves the
+     * train, so loading that product again allocates nothing.
+     * @param load
+     *      The load that was taken off the train.
+     */
+    private void unindexLoad(ProductLoad load) {
+        if(productsStale)
+            return;
+        int id = load.getProductId();
+        ProductTotal total = products[id];
+        if(total != null)
+            total.remove(load);
+    }
+
+    /**
+     * Rebuilds the product index from the cars on the train, after a split or coupling left it out of date.
+     */
+    private void rebuildProducts() {
+        products = new ProductTotal[Math.max(16, ProductCatalog.size())];
+        productsStale = false;
+        for(TrainCarNode node = head; node != null; node = node.getNext()) {
+            TrainCar car = node.getCar();
+            if(!car.isEmpty())
+                indexLoad(car.getCarLoad());
+        }
+        metrics.recordScan(size);
+    }
+
+    /**
+     * Returns an iterator over the cars of the train from the head to the tail. The iterator does not move the cursor
+     * and cannot remove cars. The train must not be changed while it is being iterated over.
+     * @return
+     *      An iterator over the cars in train order.
+     */
+    public Iterator<TrainCar> iterator() {
+        return new Iterator<TrainCar>() {
+            private TrainCarNode next = head;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public TrainCar next() {
+                if(next == null)
+                    throw new NoSuchElementException();
+                TrainCar car = next.getCar();
+                next = next.getNext();
+                return car;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Use removeCursor to remove cars from the train.");
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator over the cars of the train from the head to the tail. It splits at the middle of its range
+     * in O(log n) time through the TrainIndex, so parallel streams divide the train evenly. The train must not be
+     * changed while the spliterator is in use.
+     * @return
+     *      A spliterator over the cars in train order.
+     */
+    @Override
+    public Spliterator<TrainCar> spliterator() {
+        return spliterator(0, size);
+    }
+
+    /**
+     * Returns a spliterator over the cars at positions from (inclusive) to to (exclusive).
+     * Precondition:
+     *      0 <= from <= to <= size()
+     * @param from
+     *      The first position.
+     * @param to
+     *      The position after the last one.
+     * @return
+     *      A spliterator over the cars in the range, in train order.
+     */
+    Spliterator<TrainCar> spliterator(int from, int to) {
+        TrainCarNode start = from < to ? index.get(from) : null;
+        return new TrainSpliterator(index, start, from, to);
+    }
+
+    /**
+     * @return
+     *      Returns a sequential stream over the cars of the train from the head to the tail.
+     */
+    public Stream<TrainCar> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return
+     *      Returns a parallel stream over the cars of the train, split through the TrainIndex.
+     */
+    public Stream<TrainCar> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     /**
      * Returns the total length of the train in meters.
      * @return
@@ -410,7 +1752,9 @@ public class TrainLinkedList {
      *      The new weight.
      */
     public void setWeight(double newWeight) {
+        long stamp = beginUpdate();
         weight = newWeight;
+        endUpdate(stamp);
     }
 
     /**
@@ -419,7 +1763,9 @@ public class TrainLinkedList {
      *      The new value.
      */
     public void setValue(double newValue) {
+        long stamp = beginUpdate();
         value = newValue;
+        endUpdate(stamp);
     }
 
     /**
@@ -428,7 +1774,9 @@ public class TrainLinkedList {
      *      The updated value for the Train's dangerousness.
      */
     public void setDangerous(boolean dangerous) {
+        long stamp = beginUpdate();
         isDangerous = dangerous;
+        endUpdate(stamp);
     }
 
     /**
@@ -437,7 +1785,9 @@ public class TrainLinkedList {
      *      The new length of the train.
      */
     public void setLength(double newLength) {
+        long stamp = beginUpdate();
         length = newLength;
+        endUpdate(stamp);
     }
 
     /**
@@ -445,7 +1795,9 @@ public class TrainLinkedList {
      * @param newNumDangerousCars
      */
     public void setNumDangerousCars(int newNumDangerousCars) {
+        long stamp = beginUpdate();
         numDangerousCars = newNumDangerousCars;
+        endUpdate(stamp);
     }
 
     /**
@@ -453,7 +1805,9 @@ public class TrainLinkedList {
      * @param newSize
      */
     public void setSize(int newSize) {
+        long stamp = beginUpdate();
         size = newSize;
+        endUpdate(stamp);
     }
 
     /**
@@ -464,14 +1818,53 @@ public class TrainLinkedList {
      *      dangerous cars on the Train.
      */
     public String toString(){
-        String isDangerous = "NOT DANGEROUS";
-        if(isDangerous())
-            isDangerous = "DANGEROUS";
+        return snapshot().toString();
+    }
+
+    /**
+     * Takes an unchanging copy of the train's totals. The totals are published like a sequence lock: every change to
+     * them is made under the write lock of a StampedLock, and a snapshot reads them under an optimistic stamp and only
+     * keeps them if no change started in the meantime. Snapshots can therefore be taken from any thread, in O(1) time,
+     * without ever mixing totals from before and after a change, and without making the thread changing the train wait.
+     * If changes keep arriving the snapshot briefly takes the read lock instead. Only the totals are covered: the
+     * manifest and iteration read the cars themselves and must not run alongside changes from another thread.
+     * @return
+     *      A snapshot of the train's size, length, weight, value and dangerous cars.
+     */
+    public TrainSnapshot snapshot() {
+        for(int attempt = 0; attempt < 4; attempt++) {
+            long stamp = totalsLock.tryOptimisticRead();
+            if(stamp == 0)
+                continue;
+            TrainSnapshot snapshot = new TrainSnapshot(version, size, length, weight, value, numDangerousCars,
+                    isDangerous);
+            if(totalsLock.validate(stamp))
+                return snapshot;
+        }
+        long stamp = totalsLock.readLock();
+        try {
+            return new TrainSnapshot(version, size, length, weight, value, numDangerousCars, isDangerous);
+        }finally {
+            totalsLock.unlockRead(stamp);
+        }
+    }
 
-        String s = "Train: "+ size()+" cars, "+String.format("%.1f", getLength())+" meters, "
-                +String.format("%.1f", getWeight())+" tons, $" + String.format("%.2f", getValue())+" value, " +
-                isDangerous+" with "+numDangerousCars+" dangerous cars found on the train.";
+    /**
+     * Starts a change to the train's totals.
+     * @return
+     *      The stamp to pass to endUpdate.
+     */
+    private long beginUpdate() {
+        return totalsLock.writeLock();
+    }
 
-        return s;
+    /**
+     * Finishes a change to the train's totals, publishing it to snapshots under a new version.
+     * @param stamp
+     *      The stamp returned by beginUpdate.
+     */
+    private void endUpdate(long stamp) {
+        version++;
+        totalsLock.unlockWrite(stamp);
     }
 }
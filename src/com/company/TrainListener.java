@@ -0,0 +1,88 @@
+package com.company;
+
+/**
+ * The TrainListener interface receives the events of a TrainLinkedList: cars being inserted, removed and replaced,
+ * loads being replaced or changed, the cursor moving, and dangerous cars being purged. Every method does nothing by
+ * default, so a listener only overrides the events it cares about, and a train with no listeners does no work to
+ * report its events at all.
+ *
+ * @author Kirat Singh
+ */
+public interface TrainListener {
+    /**
+     * A listener that ignores every event.
+     */
+    TrainListener NONE = new TrainListener() {
+    };
+
+    /**
+     * Called after a car has been inserted into the train.
+     * @param car
+     *      The inserted car.
+     */
+    default void carInserted(TrainCar car) {
+    }
+
+    /**
+     * Called after a car has been removed from the train.
+     * @param car
+     *      The removed car.
+     */
+    default void carRemoved(TrainCar car) {
+    }
+
+    /**
+     * Called after the car referenced by the cursor has been replaced by another car.
+     * @param oldCar
+     *      The car that was taken off the train.
+     * @param newCar
+     *      The car that took its place.
+     */
+    default void carReplaced(TrainCar oldCar, TrainCar newCar) {
+    }
+
+    /**
+     * Called after the load on a car of the train has been replaced.
+     * @param car
+     *      The car, which now holds the new load.
+     * @param oldLoad
+     *      The load that was taken off the car, or null if the car was empty.
+     * @param newLoad
+     *      The load now on the car, or null if the car was emptied.
+     */
+    default void loadReplaced(TrainCar car, ProductLoad oldLoad, ProductLoad newLoad) {
+    }
+
+    /**
+     * Called after the weight, value, name or dangerousness of a load on the train has been changed in place.
+     * @param car
+     *      The car holding the load.
+     * @param oldLoad
+     *      A copy of the load as it was before the change.
+     * @param load
+     *      The load itself, as it is now.
+     */
+    default void loadChanged(TrainCar car, ProductLoad oldLoad, ProductLoad load) {
+    }
+
+    /**
+     * Called when the train has been asked to move its cursor one car forward or backward.
+     * @param car
+     *      The car the cursor references after the request, or null if the train is empty.
+     * @param forward
+     *      True if the cursor was asked to move toward the tail, false if toward the head.
+     * @param moved
+     *      True if the cursor moved, false if it was already at the end of the train it was asked to move toward.
+     */
+    default void cursorMoved(TrainCar car, boolean forward, boolean moved) {
+    }
+
+    /**
+     * Called after the train has been asked to remove its dangerous cars. Each removed car has already been reported
+     * through carRemoved.
+     * @param count
+     *      The number of cars that were removed, which is 0 if the train had no dangerous cars.
+     */
+    default void dangerousCarsRemoved(int count) {
+    }
+}
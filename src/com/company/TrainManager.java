@@ -1,23 +1,62 @@
 package com.company;
 
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
 import java.util.InputMismatchException;
 import java.util.Scanner;
+import javax.management.JMException;
 
 /**
  * The driver class, it allows users to do various operations on the Train. Users can add or remove cars from
  * the Linked List. They can also move the cursor around and do other operations such as searching for and setting
  * products, displaying the train and train manifest, and removing all dangerous cars from the train.
  *
+ * Run with "--batch [file]" to execute a script of commands from a file, or from standard input if no file is given,
+ * instead of showing the menu. Each line of a script holds one command letter followed by its arguments:
+ * <pre>
+ *     I length weight
+ *     L name weight value y|n
+ *     S name
+ *     C file
+ *     F, B, R, T, M, D, U, Y, Q
+ * </pre>
+ * Names containing spaces are put in double quotes, and '#' starts a comment. U undoes the last change to the train
+ * and Y redoes it; the last 1000 changes are kept. C imports the cars of a CSV or binary consist file onto the end of
+ * the train, which clears the undo history.
+ *
+ * While the menu is shown, the metrics of the train are published over JMX as
+ * "com.company:type=TrainLinkedList,name=main", where JConsole can watch them.
+ *
  * @author Kirat Singh
  */
 public class TrainManager {
+    private static final int UNDO_LIMIT = 1000;
+
     /**
      * This main menu drives the application. Here users can input various operations that allows the user to edit
      * the train. Users will also be asked for additional information upon putting an option in so that the train can
      * be properly modified.
      */
     public static void main(String[] args) {
+        if(args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args.length > 1 && !args[1].equals("-") ? args[1] : null);
+            return;
+        }
         TrainLinkedList t = new TrainLinkedList();
+        t.addListener(new ConsoleTrainListener());
+        t.setJournal(new TrainJournal(UNDO_LIMIT));
+        try {
+            t.getMetrics().register("main");
+        }catch(JMException e) {
+            System.out.println("The train metrics could not be published over JMX: " + e.getMessage());
+        }
         String operation = "";
         String options = "(F) Cursor Forward \n" +
                 "(B) Cursor Backward \n" +
@@ -28,6 +67,9 @@ public class TrainManager {
                 "(T) Display Train \n" +
                 "(M) Display Manifest \n" +
                 "(D) Remove Dangerous Cars \n" +
+                "(C) Import Consist File \n" +
+                "(U) Undo \n" +
+                "(Y) Redo \n" +
                 "(Q) Quit";
         Scanner menu = new Scanner(System.in);
         while(!operation.equalsIgnoreCase("q")){
@@ -104,13 +146,7 @@ public class TrainManager {
                             break;
                         }
                         load = new ProductLoad(loadName, loadWeight, loadValue, loadDangerous);
-                        t.getCursorData().setCarLoad(load);
-                        t.setValue(t.getValue() + loadValue);
-                        t.setWeight(t.getWeight() + loadWeight);
-                        if (loadDangerous) {
-                            t.setDangerous(true);
-                            t.setNumDangerousCars(t.getNumDangerousCars() + 1);
-                        }
+                        t.setCursorLoad(load);
                         System.out.println("A load of " + String.format(("%.1f"), loadWeight) + " " +
                                 "tons added to current car!");
                     }catch(InputMismatchException e){
@@ -125,6 +161,18 @@ public class TrainManager {
                 case "d":
                     t.removeDangerousCars();
                     break;
+                case "c":
+                    System.out.print("Enter the name of the consist file: ");
+                    importConsist(t, menu.nextLine(), System.out);
+                    break;
+                case "u":
+                    System.out.println(t.getJournal().undo() ? "The last change has been undone."
+                            : "There is nothing to undo.");
+                    break;
+                case "y":
+                    System.out.println(t.getJournal().redo() ? "The last undone change has been redone."
+                            : "There is nothing to redo.");
+                    break;
                 case "s":
                     System.out.print("Please enter the name of the load(s) you are trying to find: ");
                     loadName = menu.nextLine();
@@ -140,4 +188,157 @@ public class TrainManager {
             }
         }
     }
+
+    /**
+     * Runs a script of commands against a new train, printing the results through a buffered stream.
+     * @param fileName
+     *      The script file, or null to read the script from standard input.
+     */
+    private static void runBatch(String fileName) {
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16),
+                false);
+        try {
+            InputStream in = fileName == null ? System.in : new FileInputStream(fileName);
+            try {
+                runBatch(new InputStreamReader(in), out);
+            }finally {
+                if(fileName != null)
+                    in.close();
+            }
+        }catch(IOException e) {
+            out.println("The script could not be read: " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * Executes a script of menu commands against a new train, in order, without prompts. The output of each command
+     * is the same as in the menu. A command with bad arguments prints the menu's error message and the script carries
+     * on with the next line.
+     * @param script
+     *      The script to execute.
+     * @param out
+     *      The stream the results are printed to.
+     * @return
+     *      The train the script built.
+     * @throws IOException
+     *      Thrown when the script cannot be read.
+     */
+    public static TrainLinkedList runBatch(Reader script, PrintStream out) throws IOException {
+        TrainLinkedList t = new TrainLinkedList();
+        t.addListener(new ConsoleTrainListener(out));
+        t.setJournal(new TrainJournal(UNDO_LIMIT));
+        CommandTokenizer tokens = new CommandTokenizer(script);
+        boolean quit = false;
+        while(!quit && tokens.hasMoreLines()) {
+            String operation = tokens.nextToken();
+            if(operation == null) {
+                tokens.skipLine();
+                continue;
+            }
+            try {
+                switch(operation.toLowerCase()) {
+                    case "q":
+                        out.println("The program has been terminated.");
+                        quit = true;
+                        break;
+                    case "i":
+                        double carLength = tokens.nextDouble();
+                        double carWeight = tokens.nextDouble();
+                        t.insertAfterCursor(new TrainCar(carLength, carWeight));
+                        out.println("Train car with a length of: " + carLength + " meters and a weight of: "
+                                + carWeight + " tons" + " has been inserted into the train");
+                        break;
+                    case "m":
+                        t.writeManifest(out);
+                        break;
+                    case "f":
+                        t.cursorForward();
+                        break;
+                    case "b":
+                        t.cursorBackward();
+                        break;
+                    case "r":
+                        t.removeCursor();
+                        break;
+                    case "l":
+                        String loadName = tokens.nextToken();
+                        if(loadName == null)
+                            throw new InputMismatchException();
+                        double loadWeight = tokens.nextDouble();
+                        double loadValue = tokens.nextDouble();
+                        String dangerousValue = tokens.nextToken();
+                        boolean loadDangerous;
+                        if("y".equalsIgnoreCase(dangerousValue))
+                            loadDangerous = true;
+                        else if("n".equalsIgnoreCase(dangerousValue))
+                            loadDangerous = false;
+                        else {
+                            out.println("That option is not valid!(Must be y/n)");
+                            break;
+                        }
+                        t.setCursorLoad(new ProductLoad(loadName, loadWeight, loadValue, loadDangerous));
+                        out.println("A load of " + String.format(("%.1f"), loadWeight) + " " +
+                                "tons added to current car!");
+                        break;
+                    case "t":
+                        out.println(t.toString());
+                        break;
+                    case "d":
+                        t.removeDangerousCars();
+                        break;
+                    case "c":
+                        String consistName = tokens.nextToken();
+                        if(consistName == null)
+                            throw new InputMismatchException();
+                        importConsist(t, consistName, out);
+                        break;
+                    case "u":
+                        out.println(t.getJournal().undo() ? "The last change has been undone."
+                                : "There is nothing to undo.");
+                        break;
+                    case "y":
+                        out.println(t.getJournal().redo() ? "The last undone change has been redone."
+                                : "There is nothing to redo.");
+                        break;
+                    case "s":
+                        String name = tokens.nextToken();
+                        t.findProduct(name == null ? "" : name, out);
+                        break;
+                    default:
+                        out.println("That option does not exist!");
+                        break;
+                }
+            }catch(InputMismatchException e) {
+                out.println("Please enter valid inputs! (line " + tokens.getLineNumber() + ")");
+            }catch(IllegalArgumentException e) {
+                out.println(e.getMessage());
+            }
+            tokens.skipLine();
+        }
+        return t;
+    }
+
+    /**
+     * Imports the cars of a consist file onto the end of the train and prints how many there were.
+     * @param t
+     *      The train.
+     * @param fileName
+     *      The consist file, in CSV or binary form.
+     * @param out
+     *      The stream the result is printed to.
+     */
+    private static void importConsist(TrainLinkedList t, String fileName, PrintStream out) {
+        try {
+            InputStream in = new FileInputStream(fileName);
+            try {
+                int count = new ConsistImporter().importTo(t, in);
+                out.println(count + " cars have been imported into the train.");
+            }finally {
+                in.close();
+            }
+        }catch(IOException e) {
+            out.println("The consist could not be imported: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,202 @@
+package com.company;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The TrainMetrics record how a TrainLinkedList is used: how many times insertAfterCursor, removeCursor, findProduct,
+ * removeDangerousCars, insertAllAfterCursor, removeRange, splitAtCursor and append are called and how long each call
+ * takes, in a LatencyHistogram per operation, and how many nodes are visited by the operations that walk the whole
+ * train. Inserts the TrainJournal makes when undoing a removal count as calls to insertAfterCursor. Every train keeps
+ * its own metrics, which are always on; recording a call costs two reads of System.nanoTime and a few counter updates,
+ * and allocates nothing. The histogram of an operation is only made the first time the operation is called, so the
+ * many short-lived trains made by splitting, importing and replaying do not each pay for eight of them.
+ *
+ * The metrics can be pulled with the getters, from any thread, or published to the platform MBean server with
+ * register so JMX clients such as JConsole can watch them.
+ *
+ * @author Kirat Singh
+ */
+public class TrainMetrics implements TrainMetricsMXBean {
+    static final int INSERT = 0;
+    static final int REMOVE = 1;
+    static final int FIND_PRODUCT = 2;
+    static final int REMOVE_DANGEROUS = 3;
+    static final int INSERT_ALL = 4;
+    static final int REMOVE_RANGE = 5;
+    static final int SPLIT = 6;
+    static final int APPEND = 7;
+
+    private final TrainLinkedList train;
+    private final LatencyHistogram[] latencies;
+    private final AtomicLong scans;
+    private final AtomicLong nodesScanned;
+    private ObjectName registeredName;
+
+    /**
+     * Creates empty metrics for a train.
+     * @param owner
+     *      The train being measured.
+     */
+    TrainMetrics(TrainLinkedList owner) {
+        train = owner;
+        latencies = new LatencyHistogram[8];
+        scans = new AtomicLong();
+        nodesScanned = new AtomicLong();
+    }
+
+    /**
+     * Records a finished call to an operation.
+     * @param operation
+     *      The operation, one of the constants above.
+     * @param startNanos
+     *      The value of System.nanoTime when the call started.
+     */
+    void record(int operation, long startNanos) {
+        LatencyHistogram histogram = latencies[operation];
+        if(histogram == null) {
+            // Its fields are final, so readers that see the new histogram see it fully built.
+            histogram = new LatencyHistogram();
+            latencies[operation] = histogram;
+        }
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a walk over the train.
+     * @param nodes
+     *      The number of nodes visited.
+     */
+    void recordScan(int nodes) {
+        scans.lazySet(scans.get() + 1);
+        nodesScanned.lazySet(nodesScanned.get() + nodes);
+    }
+
+    @Override
+    public int getSize() {
+        return train.size();
+    }
+
+    @Override
+    public LatencySummary getInsertLatency() {
+        return LatencySummary.of(latencies[INSERT]);
+    }
+
+    @Override
+    public LatencySummary getRemoveLatency() {
+        return LatencySummary.of(latencies[REMOVE]);
+    }
+
+    @Override
+    public LatencySummary getFindProductLatency() {
+        return LatencySummary.of(latencies[FIND_PRODUCT]);
+    }
+
+    @Override
+    public LatencySummary getRemoveDangerousLatency() {
+        return LatencySummary.of(latencies[REMOVE_DANGEROUS]);
+    }
+
+    @Override
+    public LatencySummary getInsertAllLatency() {
+        return LatencySummary.of(latencies[INSERT_ALL]);
+    }
+
+    @Override
+    public LatencySummary getRemoveRangeLatency() {
+        return LatencySummary.of(latencies[REMOVE_RANGE]);
+    }
+
+    @Override
+    public LatencySummary getSplitLatency() {
+        return LatencySummary.of(latencies[SPLIT]);
+    }
+
+    @Override
+    public LatencySummary getAppendLatency() {
+        return LatencySummary.of(latencies[APPEND]);
+    }
+
+    @Override
+    public long getScanCount() {
+        return scans.get();
+    }
+
+    @Override
+    public long getNodesScanned() {
+        return nodesScanned.get();
+    }
+
+    @Override
+    public double getNodesPerScan() {
+        long count = scans.get();
+        return count == 0 ? 0 : (double) nodesScanned.get() / count;
+    }
+
+    /**
+     * Forgets every call and walk recorded so far. Calls made while the metrics are being reset may be partly kept.
+     */
+    @Override
+    public void reset() {
+        for(LatencyHistogram histogram : latencies) {
+            if(histogram != null)
+                histogram.reset();
+        }
+        scans.set(0);
+        nodesScanned.set(0);
+    }
+
+    /**
+     * Publishes the metrics to the platform MBean server under the name
+     * "com.company:type=TrainLinkedList,name=[trainName]".
+     * @param trainName
+     *      The name the train is shown under.
+     * @throws JMException
+     *      Thrown when the name cannot be used, or another train is already registered under it.
+     * @throws IllegalArgumentException
+     *      Thrown when the metrics are already registered.
+     */
+    public synchronized void register(String trainName) throws JMException, IllegalArgumentException{
+        if(registeredName != null)
+            throw new IllegalArgumentException("These metrics are already registered as " + registeredName + "!");
+        ObjectName name = new ObjectName("com.company:type=TrainLinkedList,name=" + trainName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        registeredName = name;
+    }
+
+    /**
+     * Takes the metrics off the platform MBean server, if they were registered.
+     * @throws JMException
+     *      Thrown when the MBean server refuses.
+     */
+    public synchronized void unregister() throws JMException {
+        if(registeredName == null)
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if(server.isRegistered(registeredName))
+            server.unregisterMBean(registeredName);
+        registeredName = null;
+    }
+
+    /**
+     * Returns a neatly formatted String representation of the metrics.
+     * @return
+     *      A string with the size of the train, the latency of each operation and the walks over the train.
+     */
+    public String toString() {
+        return "Train metrics: " + getSize() + " cars\n"
+                + "  insertAfterCursor:    " + getInsertLatency() + "\n"
+                + "  removeCursor:         " + getRemoveLatency() + "\n"
+                + "  findProduct:          " + getFindProductLatency() + "\n"
+                + "  removeDangerousCars:  " + getRemoveDangerousLatency() + "\n"
+                + "  insertAllAfterCursor: " + getInsertAllLatency() + "\n"
+                + "  removeRange:          " + getRemoveRangeLatency() + "\n"
+                + "  splitAtCursor:        " + getSplitLatency() + "\n"
+                + "  append:               " + getAppendLatency() + "\n"
+                + "  scans:                " + getScanCount() + " walks, "
+                + String.format("%.1f", getNodesPerScan()) + " nodes per walk";
+    }
+}
@@ -0,0 +1,85 @@
+package com.company;
+
+/**
+ * The management interface of the TrainMetrics of one TrainLinkedList, as JMX clients such as JConsole see it.
+ *
+ * @author Kirat Singh
+ */
+public interface TrainMetricsMXBean {
+    /**
+     * @return
+     *      Returns the number of cars on the train.
+     */
+    int getSize();
+
+    /**
+     * @return
+     *      Returns how long the calls to insertAfterCursor took.
+     */
+    LatencySummary getInsertLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to removeCursor took.
+     */
+    LatencySummary getRemoveLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to findProduct took.
+     */
+    LatencySummary getFindProductLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to removeDangerousCars took.
+     */
+    LatencySummary getRemoveDangerousLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to insertAllAfterCursor took.
+     */
+    LatencySummary getInsertAllLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to removeRange took.
+     */
+    LatencySummary getRemoveRangeLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to splitAtCursor took.
+     */
+    LatencySummary getSplitLatency();
+
+    /**
+     * @return
+     *      Returns how long the calls to append took.
+     */
+    LatencySummary getAppendLatency();
+
+    /**
+     * @return
+     *      Returns the number of times the train was walked from head to tail.
+     */
+    long getScanCount();
+
+    /**
+     * @return
+     *      Returns the number of nodes visited by all those walks together.
+     */
+    long getNodesScanned();
+
+    /**
+     * @return
+     *      Returns the mean number of nodes visited per walk, or 0 if the train has not been walked.
+     */
+    double getNodesPerScan();
+
+    /**
+     * Forgets every call and walk recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,193 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * The TrainQueries class answers questions about the contents of a TrainLinkedList: totals per product, the heaviest
+ * cars, and how weight is spread along the train. The queries that look at every car run as parallel streams over
+ * the train's spliterator, which divides the train through its TrainIndex, so the work is shared across every core of
+ * the common ForkJoinPool. How weight is spread along the train is read straight from the sums kept in the TrainIndex.
+ * The train must not be changed while a query runs.
+ *
+ * @author Kirat Singh
+ */
+public class TrainQueries {
+    /**
+     * Orders cars by their weight including the load, lightest first.
+     */
+    private static final Comparator<TrainCar> BY_TOTAL_WEIGHT = new Comparator<TrainCar>() {
+        @Override
+        public int compare(TrainCar a, TrainCar b) {
+            return Double.compare(totalWeight(a), totalWeight(b));
+        }
+    };
+
+    private TrainQueries() {
+    }
+
+    /**
+     * Sums the value of the loads on the train for each product. Names that differ only in case are the same product.
+     * @param train
+     *      The train to query.
+     * @return
+     *      A map from the lower case product name to the total value of its loads.
+     */
+    public static Map<String, Double> valueByProduct(TrainLinkedList train) {
+        return byName(train.parallelStream()
+                .filter(car -> !car.isEmpty())
+                .collect(Collectors.groupingBy(car -> car.getCarLoad().getProductId(),
+                        Collectors.summingDouble(car -> car.getCarLoad().getValue()))));
+    }
+
+    /**
+     * Sums the weight of the loads on the train for each product. Names that differ only in case are the same product.
+     * @param train
+     *      The train to query.
+     * @return
+     *      A map from the lower case product name to the total weight of its loads.
+     */
+    public static Map<String, Double> weightByProduct(TrainLinkedList train) {
+        return byName(train.parallelStream()
+                .filter(car -> !car.isEmpty())
+                .collect(Collectors.groupingBy(car -> car.getCarLoad().getProductId(),
+                        Collectors.summingDouble(car -> car.getCarLoad().getWeight()))));
+    }
+
+    /**
+     * Finds the k heaviest cars on the train, counting the weight of their loads. Each thread keeps its own k heaviest
+     * cars in a small heap and the heaps are merged at the end, so the query takes O(n log k) time.
+     * @param train
+     *      The train to query.
+     * @param k
+     *      The number of cars to find.
+     * @return
+     *      Up to k cars, heaviest first.
+     * @throws IllegalArgumentException
+     *      Thrown when k is negative.
+     */
+    public static List<TrainCar> heaviestCars(TrainLinkedList train, final int k) throws IllegalArgumentException{
+        if(k < 0)
+            throw new IllegalArgumentException("The number of cars cannot be negative!");
+        if(k == 0)
+            return new ArrayList<TrainCar>();
+        PriorityQueue<TrainCar> heaviest = train.parallelStream().collect(Collector.of(
+                () -> new PriorityQueue<TrainCar>(k, BY_TOTAL_WEIGHT),
+                (heap, car) -> offer(heap, car, k),
+                (left, right) -> {
+                    for(TrainCar car : right)
+                        offer(left, car, k);
+                    return left;
+                }));
+        ArrayList<TrainCar> result = new ArrayList<TrainCar>(heaviest);
+        Collections.sort(result, Collections.reverseOrder(BY_TOTAL_WEIGHT));
+        return result;
+    }
+
+    /**
+     * Splits the train into equal runs of positions and sums the weight of cars and loads in each run. Each run's sum
+     * is read from the TrainIndex in O(log n) time, so the query never walks the train.
+     * @param train
+     *      The train to query.
+     * @param buckets
+     *      The number of runs.
+     * @return
+     *      The total weight of each run, from the head of the train to the tail.
+     * @throws IllegalArgumentException
+     *      Thrown when the number of runs is less than 1.
+     */
+    public static double[] weightByPosition(TrainLinkedList train, int buckets)
+            throws IllegalArgumentException{
+        if(buckets < 1)
+            throw new IllegalArgumentException("There must be at least one bucket!");
+        int size = train.size();
+        double[] weights = new double[buckets];
+        double before = 0;
+        for(int bucket = 0; bucket < buckets; bucket++) {
+            int to = (int) ((long) size * (bucket + 1) / buckets);
+            double through = train.getWeightBefore(to);
+            weights[bucket] = through - before;
+            before = through;
+        }
+        return weights;
+    }
+
+    /**
+     * Counts the cars of the train by their weight including the load, in bins of equal width starting from 0. Cars
+     * heavier than the last bin are counted in the last bin.
+     * @param train
+     *      The train to query.
+     * @param binWidth
+     *      The width of each bin in tons.
+     * @param bins
+     *      The number of bins.
+     * @return
+     *      The number of cars in each bin.
+     * @throws IllegalArgumentException
+     *      Thrown when the bin width is not greater than 0 or the number of bins is less than 1.
+     */
+    public static long[] weightHistogram(TrainLinkedList train, final double binWidth, final int bins)
+            throws IllegalArgumentException{
+        if(binWidth <= 0 || bins < 1)
+            throw new IllegalArgumentException("The bin width and number of bins must be greater than 0!");
+        return train.parallelStream().collect(Collector.of(
+                () -> new long[bins],
+                (counts, car) -> counts[(int) Math.min(bins - 1, totalWeight(car) / binWidth)]++,
+                (left, right) -> {
+                    for(int i = 0; i < bins; i++)
+                        left[i] += right[i];
+                    return left;
+                }));
+    }
+
+    /**
+     * Keeps a car in a heap of the k heaviest cars seen so far.
+     * @param heap
+     *      The heap, lightest car first.
+     * @param car
+     *      The car.
+     * @param k
+     *      The size of the heap.
+     */
+    private static void offer(PriorityQueue<TrainCar> heap, TrainCar car, int k) {
+        if(heap.size() < k) {
+            heap.add(car);
+        }else if(BY_TOTAL_WEIGHT.compare(car, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(car);
+        }
+    }
+
+    /**
+     * @param car
+     *      A car.
+     * @return
+     *      Returns the weight of the car plus the weight of its load.
+     */
+    private static double totalWeight(TrainCar car) {
+        if(car.isEmpty())
+            return car.getCarWeight();
+        return car.getCarWeight() + car.getCarLoad().getWeight();
+    }
+
+    /**
+     * Rekeys a map of per-product sums from ProductCatalog ids to lower case product names.
+     * @param byId
+     *      The sums, keyed by product id.
+     * @return
+     *      The same sums, keyed by product name.
+     */
+    private static Map<String, Double> byName(Map<Integer, Double> byId) {
+        HashMap<String, Double> named = new HashMap<String, Double>();
+        for(Map.Entry<Integer, Double> entry : byId.entrySet())
+            named.put(ProductCatalog.nameOf(entry.getKey()), entry.getValue());
+        return named;
+    }
+}
@@ -0,0 +1,121 @@
+package com.company;
+
+/**
+ * The TrainSnapshot class is an unchanging copy of the totals of a TrainLinkedList taken at one moment: its size,
+ * length, weight, value and dangerous cars. All of the totals come from the same version of the train, so a snapshot
+ * taken by one thread while another thread is changing the train never mixes totals from before and after a change.
+ *
+ * A snapshot holds only the totals, not the cars. The manifest and the train's iterator still walk the live chain of
+ * cars, so they are not safe to use while another thread changes the train; a view of the cars that can be read
+ * alongside changes is left for a later change.
+ *
+ * @author Kirat Singh
+ */
+public class TrainSnapshot {
+    private final long version;
+    private final int size;
+    private final double length;
+    private final double weight;
+    private final double value;
+    private final int numDangerousCars;
+    private final boolean isDangerous;
+
+    /**
+     * Creates a snapshot from totals that were read together.
+     * @param trainVersion
+     *      The number of changes made to the train before the snapshot was taken.
+     * @param trainSize
+     *      The number of cars.
+     * @param trainLength
+     *      The total length in meters.
+     * @param trainWeight
+     *      The total weight of cars and loads in tons.
+     * @param trainValue
+     *      The total value of the loads.
+     * @param dangerousCars
+     *      The number of dangerous cars.
+     * @param dangerous
+     *      Whether the train is dangerous.
+     */
+    TrainSnapshot(long trainVersion, int trainSize, double trainLength, double trainWeight, double trainValue,
+                  int dangerousCars, boolean dangerous) {
+        version = trainVersion;
+        size = trainSize;
+        length = trainLength;
+        weight = trainWeight;
+        value = trainValue;
+        numDangerousCars = dangerousCars;
+        isDangerous = dangerous;
+    }
+
+    /**
+     * @return
+     *      Returns the number of changes made to the train before this snapshot was taken. A later snapshot of the
+     *      same train with the same version has the same totals.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return
+     *      Returns the number of cars on the train.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return
+     *      Returns the total length of the train in meters.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * @return
+     *      Returns the total weight of the train, including loads and cars.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return
+     *      Returns the total value of all the loads on the train.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return
+     *      Returns the number of dangerous cars on the train.
+     */
+    public int getNumDangerousCars() {
+        return numDangerousCars;
+    }
+
+    /**
+     * @return
+     *      Returns true if the train contains at least one dangerous car.
+     */
+    public boolean isDangerous() {
+        return isDangerous;
+    }
+
+    /**
+     * Returns the same description of the train as TrainLinkedList.toString().
+     * @return
+     *      A string with the number of cars, length, weight, value and dangerousness of the train.
+     */
+    public String toString() {
+        String isDangerous = "NOT DANGEROUS";
+        if(isDangerous())
+            isDangerous = "DANGEROUS";
+        return "Train: " + size + " cars, " + String.format("%.1f", length) + " meters, "
+                + String.format("%.1f", weight) + " tons, $" + String.format("%.2f", value) + " value, " +
+                isDangerous + " with " + numDangerousCars + " dangerous cars found on the train.";
+    }
+}
@@ -0,0 +1,82 @@
+package com.company;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The TrainSpliterator walks a range of positions of a TrainLinkedList along the node chain. It splits in half by
+ * asking the train's TrainIndex for the node in the middle of its range, which takes O(log n) time, so parallel streams
+ * over a train divide it evenly however long it is. The train must not be changed while it is being walked.
+ *
+ * @author Kirat Singh
+ */
+class TrainSpliterator implements Spliterator<TrainCar> {
+    private static final int MIN_SPLIT = 1024;
+
+    private TrainIndex index;
+    private TrainCarNode current;
+    private int position;
+    private int fence;
+
+    /**
+     * Creates a spliterator over the positions from (inclusive) to fence (exclusive).
+     * @param trainIndex
+     *      The position index of the train.
+     * @param start
+     *      The node at position from, or null if the range is empty.
+     * @param from
+     *      The first position.
+     * @param end
+     *      The position after the last one.
+     */
+    TrainSpliterator(TrainIndex trainIndex, TrainCarNode start, int from, int end) {
+        index = trainIndex;
+        current = start;
+        position = from;
+        fence = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TrainCar> action) {
+        if(position >= fence)
+            return false;
+        TrainCar car = current.getCar();
+        current = current.getNext();
+        position++;
+        action.accept(car);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super TrainCar> action) {
+        TrainCarNode node = current;
+        int end = fence;
+        for(int i = position; i < end; i++) {
+            action.accept(node.getCar());
+            node = node.getNext();
+        }
+        current = node;
+        position = end;
+    }
+
+    @Override
+    public Spliterator<TrainCar> trySplit() {
+        if(fence - position < MIN_SPLIT)
+            return null;
+        int mid = (position + fence) >>> 1;
+        TrainSpliterator front = new TrainSpliterator(index, current, position, mid);
+        current = index.get(mid);
+        position = mid;
+        return front;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
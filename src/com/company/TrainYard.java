@@ -0,0 +1,391 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The TrainYard class keeps a fleet of named TrainLinkedLists. The trains are stored in a fixed number of shards, each
+ * a HashMap guarded by its own read/write lock, so operators registering, looking up and retiring different trains
+ * rarely wait for each other.
+ *
+ * The yard listens to every train it holds and keeps fleet-wide aggregates up to date as the trains change: the number
+ * of cars, their weight and value, the number of dangerous cars, and for every product the trains carrying it and how
+ * much each of them carries. Fleet queries are answered from these aggregates and never walk a train.
+ *
+ * A TrainLinkedList is not itself safe for use by several threads, so each train must only be changed by one thread
+ * at a time. Different trains may be changed from different threads at once, and the fleet may be queried from any
+ * thread while they are.
+ *
+ * @author Kirat Singh
+ */
+public class TrainYard {
+    private static final int DEFAULT_SHARDS = 16;
+
+    /**
+     * One stripe of the yard's trains.
+     */
+    private static class Shard {
+        private final HashMap<String, Member> trains = new HashMap<String, Member>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * The fleet's record of one product, kept under its ProductCatalog id: its total across the fleet and its total on
+     * each train carrying it. Changed only inside ConcurrentHashMap.compute, and read while holding its monitor.
+     */
+    private static class ProductEntry {
+        private final ProductTotal total = new ProductTotal();
+        private final HashMap<String, ProductTotal> byTrain = new HashMap<String, ProductTotal>();
+    }
+
+    private final Shard[] shards;
+    private final ConcurrentHashMap<Integer, ProductEntry> products;
+    private final LongAdder numTrains;
+    private final LongAdder numCars;
+    private final DoubleAdder weight;
+    private final DoubleAdder value;
+    private final LongAdder numDangerousCars;
+
+    /**
+     * Creates an empty yard with 16 shards.
+     */
+    public TrainYard() {
+        this(DEFAULT_SHARDS);
+    }
+
+    /**
+     * Creates an empty yard.
+     * @param shardCount
+     *      The number of shards, which is rounded up to a power of two.
+     * @throws IllegalArgumentException
+     *      Thrown when the number of shards is less than 1.
+     */
+    public TrainYard(int shardCount) throws IllegalArgumentException{
+        if(shardCount < 1)
+            throw new IllegalArgumentException("There must be at least one shard!");
+        int count = Integer.highestOneBit(shardCount);
+        if(count < shardCount)
+            count <<= 1;
+        shards = new Shard[count];
+        for(int i = 0; i < count; i++)
+            shards[i] = new Shard();
+        products = new ConcurrentHashMap<Integer, ProductEntry>();
+        numTrains = new LongAdder();
+        numCars = new LongAdder();
+        weight = new DoubleAdder();
+        value = new DoubleAdder();
+        numDangerousCars = new LongAdder();
+    }
+
+    /**
+     * Creates a new, empty train in the yard.
+     * @param name
+     *      The name of the train.
+     * @return
+     *      The new train.
+     * @throws IllegalArgumentException
+     *      Thrown when the name is null or a train with that name is already in the yard.
+     */
+    public TrainLinkedList addTrain(String name) throws IllegalArgumentException{
+        TrainLinkedList train = new TrainLinkedList();
+        addTrain(name, train);
+        return train;
+    }
+
+    /**
+     * Adds an existing train to the yard. The cars already on it are counted into the fleet aggregates once, and every
+     * later change to it is tracked as it happens.
+     * Precondition:
+     *      The train is not being changed by another thread while it is added.
+     * @param name
+     *      The name of the train.
+     * @param train
+     *      The train.
+     * @throws IllegalArgumentException
+     *      Thrown when the name or train is null or a train with that name is already in the yard.
+     */
+    public void addTrain(String name, TrainLinkedList train) throws IllegalArgumentException{
+        if(name == null)
+            throw new IllegalArgumentException("The train must have a name!");
+        if(train == null)
+            throw new IllegalArgumentException("That train has not been created!");
+        Shard shard = shardFor(name);
+        Member member = new Member(name, train);
+        shard.lock.writeLock().lock();
+        try {
+            if(shard.trains.containsKey(name))
+                throw new IllegalArgumentException("A train named " + name + " is already in the yard!");
+            shard.trains.put(name, member);
+        }finally {
+            shard.lock.writeLock().unlock();
+        }
+        numTrains.increment();
+        for(TrainCar car : train)
+            member.carInserted(car);
+        train.addListener(member);
+    }
+
+    /**
+     * Takes a train out of the yard and out of the fleet aggregates.
+     * Precondition:
+     *      The train is not being changed by another thread while it is removed.
+     * @param name
+     *      The name of the train.
+     * @return
+     *      The removed train, or null if no train has that name.
+     */
+    public TrainLinkedList removeTrain(String name) {
+        if(name == null)
+            return null;
+        Shard shard = shardFor(name);
+        Member member;
+        shard.lock.writeLock().lock();
+        try {
+            member = shard.trains.remove(name);
+        }finally {
+            shard.lock.writeLock().unlock();
+        }
+        if(member == null)
+            return null;
+        member.train.removeListener(member);
+        for(TrainCar car : member.train)
+            member.carRemoved(car);
+        numTrains.decrement();
+        return member.train;
+    }
+
+    /**
+     * @param name
+     *      The name of a train.
+     * @return
+     *      Returns the train with that name, or null if it is not in the yard.
+     */
+    public TrainLinkedList getTrain(String name) {
+        if(name == null)
+            return null;
+        Shard shard = shardFor(name);
+        shard.lock.readLock().lock();
+        try {
+            Member member = shard.trains.get(name);
+            return member == null ? null : member.train;
+        }finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return
+     *      Returns the names of every train in the yard, sorted.
+     */
+    public List<String> getTrainNames() {
+        ArrayList<String> names = new ArrayList<String>();
+        for(Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                names.addAll(shard.trains.keySet());
+            }finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Finds every train carrying a product, ignoring case.
+     * @param productName
+     *      The name of the product.
+     * @return
+     *      A map from the name of each train carrying the product to a single ProductLoad record of the summed weight
+     *      and value it carries, which is dangerous if any of its loads are. The map is empty if no train carries it.
+     */
+    public Map<String, ProductLoad> findProduct(String productName) {
+        HashMap<String, ProductLoad> found = new HashMap<String, ProductLoad>();
+        ProductEntry entry = products.get(ProductCatalog.find(productName));
+        if(entry == null)
+            return found;
+        synchronized(entry) {
+            for(Map.Entry<String, ProductTotal> train : entry.byTrain.entrySet()) {
+                ProductTotal total = train.getValue();
+                found.put(train.getKey(),
+                        new ProductLoad(productName, total.getWeight(), total.getValue(), total.isDangerous()));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Looks up the combined weight and value of every load of a product across the fleet, ignoring case.
+     * @param productName
+     *      The name of the product.
+     * @return
+     *      A single ProductLoad record of the summed weight and value, which is dangerous if any of the loads are, or
+     *      null if no train carries the product.
+     */
+    public ProductLoad getProductTotal(String productName) {
+        ProductEntry entry = products.get(ProductCatalog.find(productName));
+        if(entry == null)
+            return null;
+        synchronized(entry) {
+            ProductTotal total = entry.total;
+            if(total.getCount() == 0)
+                return null;
+            return new ProductLoad(productName, total.getWeight(), total.getValue(), total.isDangerous());
+        }
+    }
+
+    /**
+     * @return
+     *      Returns the number of trains in the yard.
+     */
+    public int getNumTrains() {
+        return numTrains.intValue();
+    }
+
+    /**
+     * @return
+     *      Returns the number of cars on all the trains in the yard.
+     */
+    public long getNumCars() {
+        return numCars.sum();
+    }
+
+    /**
+     * @return
+     *      Returns the total weight of all the trains in the yard, including loads and cars.
+     */
+    public double getWeight() {
+        return weight.sum();
+    }
+
+    /**
+     * @return
+     *      Returns the total value of all the loads in the yard.
+     */
+    public double getValue() {
+        return value.sum();
+    }
+
+    /**
+     * @return
+     *      Returns the number of dangerous cars on all the trains in the yard.
+     */
+    public long getNumDangerousCars() {
+        return numDangerousCars.sum();
+    }
+
+    /**
+     * Returns a neatly formatted String representation of the yard.
+     * @return
+     *      A string with the number of trains and cars, the weight and value of the fleet, and its dangerous cars.
+     */
+    public String toString() {
+        return "Yard: " + getNumTrains() + " trains, " + getNumCars() + " cars, "
+                + String.format("%.1f", getWeight()) + " tons, $" + String.format("%.2f", getValue()) + " value, "
+                + getNumDangerousCars() + " dangerous cars in the fleet.";
+    }
+
+    /**
+     * @param name
+     *      The name of a train.
+     * @return
+     *      Returns the shard that holds the train.
+     */
+    private Shard shardFor(String name) {
+        int h = name.hashCode();
+        h ^= h >>> 16;
+        return shards[h & (shards.length - 1)];
+    }
+
+    /**
+     * Adds a load to the fleet aggregates, or takes it out of them.
+     * @param trainName
+     *      The name of the train carrying the load.
+     * @param load
+     *      The load.
+     * @param sign
+     *      1 to add the load, -1 to take it out.
+     */
+    private void addLoad(final String trainName, final ProductLoad load, final int sign) {
+        weight.add(sign * load.getWeight());
+        value.add(sign * load.getValue());
+        if(load.isDangerous())
+            numDangerousCars.add(sign);
+        products.compute(load.getProductId(), (key, entry) -> {
+            if(entry == null)
+                entry = new ProductEntry();
+            synchronized(entry) {
+                ProductTotal onTrain = entry.byTrain.get(trainName);
+                if(onTrain == null) {
+                    onTrain = new ProductTotal();
+                    entry.byTrain.put(trainName, onTrain);
+                }
+                if(sign > 0) {
+                    entry.total.add(load);
+                    onTrain.add(load);
+                }else {
+                    entry.total.remove(load);
+                    onTrain.remove(load);
+                }
+                if(onTrain.getCount() == 0)
+                    entry.byTrain.remove(trainName);
+                return entry.total.getCount() == 0 ? null : entry;
+            }
+        });
+    }
+
+    /**
+     * A train registered in the yard, and the listener that feeds its changes into the fleet aggregates.
+     */
+    private class Member implements TrainListener {
+        private final String name;
+        private final TrainLinkedList train;
+
+        private Member(String trainName, TrainLinkedList memberTrain) {
+            name = trainName;
+            train = memberTrain;
+        }
+
+        @Override
+        public void carInserted(TrainCar car) {
+            numCars.increment();
+            weight.add(car.getCarWeight());
+            if(!car.isEmpty())
+                addLoad(name, car.getCarLoad(), 1);
+        }
+
+        @Override
+        public void carRemoved(TrainCar car) {
+            numCars.decrement();
+            weight.add(-car.getCarWeight());
+            if(!car.isEmpty())
+                addLoad(name, car.getCarLoad(), -1);
+        }
+
+        @Override
+        public void carReplaced(TrainCar oldCar, TrainCar newCar) {
+            carRemoved(oldCar);
+            carInserted(newCar);
+        }
+
+        @Override
+        public void loadReplaced(TrainCar car, ProductLoad oldLoad, ProductLoad newLoad) {
+            if(oldLoad != null)
+                addLoad(name, oldLoad, -1);
+            if(newLoad != null)
+                addLoad(name, newLoad, 1);
+        }
+
+        @Override
+        public void loadChanged(TrainCar car, ProductLoad oldLoad, ProductLoad load) {
+            loadReplaced(car, oldLoad, load);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.company;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a TrainFile reads each car from its fixed place, keeps the committed train readable while cars are
+ * appended over its name table, and reports a damaged car record as an IOException.
+ *
+ * @author Kirat Singh
+ */
+public class TrainFileTest {
+    private static final int CAR_START = 8 + 2 * 48;
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempFile("train", ".bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Cars appended in several commits, each adding names and running over the name table, all read back in order.
+     */
+    @Test
+    public void appendsOverTheNameTableReadBack() throws IOException {
+        TrainFile file = TrainFile.create(path);
+        try {
+            for(int commit = 0; commit < 4; commit++) {
+                for(int i = 0; i < 3000; i++)
+                    file.append(car(commit * 3000 + i));
+                file.setCursorIndex(commit);
+                file.commit();
+            }
+        }finally {
+            file.close();
+        }
+
+        file = TrainFile.open(path);
+        try {
+            assertEquals(12000, file.size());
+            assertEquals(3, file.getCursorIndex());
+            for(int i = 11999; i >= 0; i -= 997)
+                checkCar(i, file.getCar(i));
+            TrainLinkedList train = file.load();
+            assertEquals(12000, train.size());
+            assertEquals(3, train.getCursorIndex());
+        }finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Appending without committing leaves the committed cars and names readable after the file is reopened.
+     */
+    @Test
+    public void uncommittedAppendsAreDiscarded() throws IOException {
+        TrainFile file = TrainFile.create(path);
+        try {
+            for(int i = 0; i < 10; i++)
+                file.append(car(i));
+            file.commit();
+            for(int i = 10; i < 5000; i++)
+                file.append(car(i));
+        }finally {
+            file.close();
+        }
+
+        file = TrainFile.open(path);
+        try {
+            assertEquals(10, file.size());
+            for(int i = 0; i < 10; i++)
+                checkCar(i, file.getCar(i));
+        }finally {
+            file.close();
+        }
+    }
+
+    /**
+     * A car record naming a load name below -1 is reported as a damaged file.
+     */
+    @Test
+    public void negativeNameIdIsDamage() throws IOException {
+        TrainFile file = TrainFile.create(path);
+        try {
+            file.append(car(0));
+            file.commit();
+        }finally {
+            file.close();
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer nameId = ByteBuffer.allocate(4);
+            nameId.putInt(-5).flip();
+            channel.write(nameId, CAR_START + 34);
+        }finally {
+            channel.close();
+        }
+
+        file = TrainFile.open(path);
+        try {
+            file.getCar(0);
+            fail("A damaged car record was read.");
+        }catch(IOException e) {
+            // expected
+        }finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Builds a car whose sizes follow from its number, loaded with one of many names on every other car.
+     * @param i
+     *      The number of the car.
+     * @return
+     *      The new car.
+     */
+    private static TrainCar car(int i) {
+        TrainCar car = new TrainCar(1 + i % 20, 1 + i % 50);
+        if(i % 2 == 0)
+            car.setCarLoad(new ProductLoad("Product " + i / 10, 1 + i % 80, i, i % 6 == 0));
+        return car;
+    }
+
+    /**
+     * Checks that a car read from the file is the one car(i) built.
+     * @param i
+     *      The number of the car.
+     * @param read
+     *      The car read from the file.
+     */
+    private static void checkCar(int i, TrainCar read) {
+        TrainCar expected = car(i);
+        assertEquals(expected.getCarLength(), read.getCarLength(), 0);
+        assertEquals(expected.getCarWeight(), read.getCarWeight(), 0);
+        if(expected.isEmpty()) {
+            assertNull(read.getCarLoad());
+            return;
+        }
+        assertEquals(expected.getCarLoad().getName(), read.getCarLoad().getName());
+        assertEquals(expected.getCarLoad().getWeight(), read.getCarLoad().getWeight(), 0);
+        assertEquals(expected.getCarLoad().getValue(), read.getCarLoad().getValue(), 0);
+        assertEquals(expected.getCarLoad().isDangerous(), read.getCarLoad().isDangerous());
+    }
+}
@@ -0,0 +1,72 @@
+package com.company;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the TrainJournal undoes an operation on many cars completely or not at all, even when its group of
+ * records does not fit in the ring.
+ *
+ * @author Kirat Singh
+ */
+public class TrainJournalTest {
+    private TrainLinkedList train;
+    private TrainJournal journal;
+
+    @Before
+    public void setUp() {
+        train = new TrainLinkedList();
+        journal = new TrainJournal(8);
+        train.setJournal(journal);
+        for(int i = 0; i < 20; i++) {
+            TrainCar car = new TrainCar(1 + i, 2 + i);
+            if(i % 2 == 0)
+                car.setCarLoad(new ProductLoad("Coal", 1 + i, 10 * i, i % 4 == 0));
+            train.insertAfterCursor(car);
+        }
+    }
+
+    /**
+     * A removal of more cars than the ring holds cannot be undone, rather than being undone in part.
+     */
+    @Test
+    public void groupLargerThanRingIsNotUndoneInPart() {
+        train.removeRange(0, 12);
+        assertEquals(8, train.size());
+        assertFalse(journal.canUndo());
+        assertFalse(journal.undo());
+        assertEquals(8, train.size());
+    }
+
+    /**
+     * The journal keeps recording the operations after one that did not fit.
+     */
+    @Test
+    public void recordingResumesAfterGroupLargerThanRing() {
+        train.removeRange(0, 12);
+        train.seek(0);
+        train.removeCursor();
+        assertEquals(7, train.size());
+        assertTrue(journal.undo());
+        assertEquals(8, train.size());
+        while(journal.undo())
+            assertEquals(8, train.size());
+    }
+
+    /**
+     * A removal that fits in the ring is undone completely, even when older operations had to be dropped for it.
+     */
+    @Test
+    public void groupThatFitsIsUndoneCompletely() {
+        double weight = train.getWeight();
+        train.removeRange(4, 10);
+        assertEquals(14, train.size());
+        assertTrue(journal.undo());
+        assertEquals(20, train.size());
+        assertEquals(weight, train.getWeight(), 1e-9);
+    }
+}
@@ -0,0 +1,104 @@
+package com.company;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a warmed up TrainLinkedList inserts and removes cars at the cursor without allocating: removed nodes go
+ * back to the node pool and are reused by the next insert, and neither operation creates garbage.
+ *
+ * @author Kirat Singh
+ */
+public class TrainLinkedListAllocationTest {
+    private static final int PAIRS = 200000;
+    private static final int ROUNDS = 5;
+
+    private TrainLinkedList train;
+    private TrainCar[] spares;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(7);
+        train = new TrainLinkedList();
+        ArrayList<TrainCar> cars = new ArrayList<TrainCar>();
+        for(int i = 0; i < 10000; i++)
+            cars.add(car(random, i));
+        train.insertAllAfterCursor(cars);
+        train.seek(5000);
+        spares = new TrainCar[8];
+        for(int i = 0; i < spares.length; i++)
+            spares[i] = car(random, i);
+        run(PAIRS);
+    }
+
+    /**
+     * The node pool hands back the removed node, so no new node is ever allocated.
+     */
+    @Test
+    public void insertAndRemoveReuseNodes() {
+        long before = train.getNodesAllocated();
+        run(PAIRS);
+        assertEquals(before, train.getNodesAllocated());
+        assertEquals(10000, train.size());
+    }
+
+    /**
+     * No bytes at all are allocated by the thread making the changes. A round that runs while the JIT compiler is
+     * still replacing code may allocate, so the best of a few rounds is checked.
+     */
+    @Test
+    public void insertAndRemoveAllocateNothing() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long id = Thread.currentThread().getId();
+        allocations.getThreadAllocatedBytes(id);
+
+        long fewest = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS && fewest > 0; round++) {
+            long before = allocations.getThreadAllocatedBytes(id);
+            run(PAIRS);
+            fewest = Math.min(fewest, allocations.getThreadAllocatedBytes(id) - before);
+        }
+        assertEquals(0, fewest);
+    }
+
+    /**
+     * Inserts a car after the cursor and removes it again, the given number of times.
+     * @param pairs
+     *      The number of insert and remove pairs.
+     */
+    private void run(int pairs) {
+        for(int i = 0; i < pairs; i++) {
+            train.insertAfterCursor(spares[i & 7]);
+            train.removeCursor();
+        }
+    }
+
+    /**
+     * Builds a car of random size, with a load on every other car and a dangerous load on some of those.
+     * @param random
+     *      The source of the sizes.
+     * @param i
+     *      The number of the car.
+     * @return
+     *      The new car.
+     */
+    private static TrainCar car(Random random, int i) {
+        TrainCar car = new TrainCar(1 + random.nextInt(20), 1 + random.nextInt(50));
+        if(i % 2 == 0)
+            car.setCarLoad(new ProductLoad(i % 3 == 0 ? "Coal" : "Oil", 1 + random.nextInt(80),
+                    1 + random.nextInt(1000), i % 7 == 0));
+        return car;
+    }
+}